@@ -13,8 +13,9 @@ java {
     targetCompatibility = JavaVersion.VERSION_17
 }
 
-// which BTF (buildType + flavor) of the native physics library to copy:
-val btf = "ReleaseSp"
+// which BTF (buildType + flavor) of the native physics library to copy,
+// overridable using -Pbtf=ReleaseSpMt (for parallel solvers, as in ManyBalls):
+val btf = project.findProperty("btf") as String? ?: "ReleaseSp"
 //val btf = "DebugSp"
 
 val fs = System.getProperty("file.separator")
@@ -26,6 +27,19 @@ val lbjVersion = libs.versions.libbulletjme.get()
 val libbulletjmeUrl = "https://github.com/stephengold/Libbulletjme/releases/download/$lbjVersion/"
 //val libbulletjmeUrl = "file:///home/sgold/NetBeansProjects/Libbulletjme/dist/"
 
+// Configure a source set for JMH benchmarks:
+
+val jmh: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+configurations.named(jmh.implementationConfigurationName) {
+    extendsFrom(configurations.implementation.get())
+}
+configurations.named(jmh.runtimeOnlyConfigurationName) {
+    extendsFrom(configurations.runtimeOnly.get())
+}
+
 tasks.withType<JavaCompile>().all { // Java compile-time options:
     options.compilerArgs.add("-Xdiags:verbose")
     options.compilerArgs.add("-Xlint:unchecked")
@@ -39,6 +53,10 @@ tasks.register<JavaExec>("HelloObsidian") {
     description = "Runs the HelloObsidian app."
     mainClass = "com.github.stephengold.macana.HelloObsidian"
 }
+tasks.register<JavaExec>("ManyBalls") {
+    description = "Runs the ManyBalls stress test."
+    mainClass = "com.github.stephengold.macana.ManyBalls"
+}
 tasks.register<Exec>("rdHelloObsidian") {
     commandLine(
             "/usr/share/renderdoc_1.31/bin/renderdoccmd",
@@ -54,15 +72,87 @@ tasks.register<Exec>("rdHelloObsidian") {
     description = "Runs HelloObsidian with a renderDoc overlay."
 }
 
+// Register tasks to run the JMH benchmarks, for example:
+//   ./gradlew jmh -PjmhArgs="ConvertBenchmark -prof gc"
+
+val jmhArgs = (project.findProperty("jmhArgs") as String? ?: "")
+        .split(" ").filter { it.isNotEmpty() }
+tasks.register<JavaExec>("jmh") {
+    args(jmhArgs)
+    classpath = jmh.runtimeClasspath
+    dependsOn("jmhClasses")
+    description = "Runs the JMH benchmarks."
+    mainClass = "org.openjdk.jmh.Main"
+}
+tasks.register<JavaExec>("jmhLlvmpipe") {
+    args(jmhArgs)
+    classpath = jmh.runtimeClasspath
+    dependsOn("jmhClasses")
+    description = "Runs the JMH benchmarks using Mesa's software renderer."
+    environment("GALLIUM_DRIVER", "llvmpipe")
+    environment("LIBGL_ALWAYS_SOFTWARE", "1")
+    mainClass = "org.openjdk.jmh.Main"
+}
+
+// Register tasks to run an app headless and report frame timings, for example:
+//   ./gradlew headless -PheadlessArgs="HelloObsidian --frames=600 --out=stats.json"
+
+val headlessArgs = (project.findProperty("headlessArgs") as String? ?: "HelloObsidian")
+        .split(" ").filter { it.isNotEmpty() }
+tasks.register<JavaExec>("headless") {
+    args(headlessArgs)
+    description = "Runs a Macana app headless and reports frame timings."
+    mainClass = "com.github.stephengold.macana.HeadlessRunner"
+}
+tasks.register<JavaExec>("headlessLlvmpipe") {
+    args(headlessArgs)
+    description = "Runs a Macana app headless using Mesa's software renderer."
+    environment("GALLIUM_DRIVER", "llvmpipe")
+    environment("LIBGL_ALWAYS_SOFTWARE", "1")
+    mainClass = "com.github.stephengold.macana.HeadlessRunner"
+}
+
+// Register tasks to measure ManyBalls step times headless with 1, 2, 4, and 8
+// solvers, for example:
+//   ./gradlew ManyBallsSweep -Pbtf=ReleaseSpMt
+
+val sweepTasks = listOf(1, 2, 4, 8).map { numSolvers ->
+    tasks.register<JavaExec>("ManyBallsSolvers$numSolvers") {
+        args("ManyBalls", "--frames=600", "--warmup=60")
+        description = "Runs ManyBalls headless with $numSolvers solver(s)."
+        mainClass = "com.github.stephengold.macana.HeadlessRunner"
+        systemProperty("macana.solvers", numSolvers)
+    }
+}
+sweepTasks.zipWithNext { earlier, later ->
+    later.configure { mustRunAfter(earlier) }
+}
+tasks.register("ManyBallsSweep") {
+    dependsOn(sweepTasks)
+    description = "Measures ManyBalls step times for several solver counts."
+}
+
 val os = DefaultNativePlatform.getCurrentOperatingSystem()
 
 tasks.withType<JavaExec>().all { // Java runtime options:
     if (os.isMacOsX()) {
         jvmArgs("-XstartOnFirstThread") // required for GLFW on macOS
     }
-    classpath = sourceSets.main.get().getRuntimeClasspath()
+    classpath(sourceSets.main.get().getRuntimeClasspath())
     dependsOn("downloadNatives")
     enableAssertions = true
+
+    // Record frames and input for replay, for instance -Precord=frames.rec:
+    val record = project.findProperty("record") as String?
+    if (record != null) {
+        systemProperty("macana.record", record)
+    }
+
+    // Skip the font warm-up, to measure its effect, with -PfontWarmUp=false:
+    val fontWarmUp = project.findProperty("fontWarmUp") as String?
+    if (fontWarmUp != null) {
+        systemProperty("macana.fontWarmUp", fontWarmUp)
+    }
 }
 
 val includeLinux = os.isLinux()
@@ -105,6 +195,9 @@ dependencies {
 
     implementation(platform(libs.lwjgl.bom))
 
+    "jmhImplementation"(libs.jmh.core)
+    "jmhAnnotationProcessor"(libs.jmh.generator.annprocess)
+
     if (includeLinux) {
         runtimeOnly(libs.skija.linux.x64)
         runtimeOnly(variantOf(libs.lwjgl){classifier("natives-linux")})
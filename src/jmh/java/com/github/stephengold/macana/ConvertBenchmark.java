@@ -0,0 +1,142 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+import java.util.concurrent.TimeUnit;
+import myworld.obsidian.input.Key;
+import myworld.obsidian.input.MouseButton;
+import org.lwjgl.glfw.GLFW;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark the conversion of GLFW input codes to Obsidian enums, comparing
+ * the lookup tables with the switch they're built from.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class ConvertBenchmark {
+    // *************************************************************************
+    // fields
+
+    /**
+     * GLFW key codes to convert, including some that aren't mapped
+     */
+    final private int[] glfwKeys = {
+        GLFW.GLFW_KEY_A, GLFW.GLFW_KEY_SPACE, GLFW.GLFW_KEY_ENTER,
+        GLFW.GLFW_KEY_LEFT_SHIFT, GLFW.GLFW_KEY_F12, GLFW.GLFW_KEY_KP_5,
+        GLFW.GLFW_KEY_UNKNOWN, GLFW.GLFW_KEY_Z, GLFW.GLFW_KEY_PAGE_DOWN,
+        GLFW.GLFW_KEY_RIGHT_SUPER, GLFW.GLFW_KEY_0, GLFW.GLFW_KEY_ESCAPE
+    };
+    /**
+     * GLFW mouse-button codes to convert
+     */
+    final private int[] glfwButtons = {
+        GLFW.GLFW_MOUSE_BUTTON_LEFT, GLFW.GLFW_MOUSE_BUTTON_RIGHT,
+        GLFW.GLFW_MOUSE_BUTTON_MIDDLE, GLFW.GLFW_MOUSE_BUTTON_4
+    };
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Explicit no-arg constructor to avoid javadoc warnings from JDK 18+.
+     */
+    public ConvertBenchmark() {
+        // do nothing
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Convert GLFW key codes using the lookup table.
+     *
+     * @param blackhole for consuming results (not null)
+     */
+    @Benchmark
+    public void keyTable(Blackhole blackhole) {
+        for (int glfwKey : glfwKeys) {
+            Key key = Convert.convertGlfwKey(glfwKey);
+            blackhole.consume(key);
+        }
+    }
+
+    /**
+     * Convert GLFW key codes using the switch.
+     *
+     * @param blackhole for consuming results (not null)
+     */
+    @Benchmark
+    public void keySwitch(Blackhole blackhole) {
+        for (int glfwKey : glfwKeys) {
+            Key key = Convert.lookupGlfwKey(glfwKey);
+            blackhole.consume(key);
+        }
+    }
+
+    /**
+     * Convert Obsidian keys back to GLFW key codes.
+     *
+     * @param blackhole for consuming results (not null)
+     */
+    @Benchmark
+    public void keyReverse(Blackhole blackhole) {
+        for (int glfwKey : glfwKeys) {
+            Key key = Convert.convertGlfwKey(glfwKey);
+            int code = Convert.convertKeyToGlfw(key);
+            blackhole.consume(code);
+        }
+    }
+
+    /**
+     * Convert GLFW mouse-button codes.
+     *
+     * @param blackhole for consuming results (not null)
+     */
+    @Benchmark
+    public void mouseButton(Blackhole blackhole) {
+        for (int glfwButton : glfwButtons) {
+            MouseButton button = Convert.convertGlfwMouseButton(glfwButton);
+            blackhole.consume(button);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import myworld.obsidian.ObsidianUI;
+import myworld.obsidian.input.Key;
+import org.lwjgl.glfw.GLFW;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark MacanaApp's input path: queuing GLFW callbacks in a
+ * GuiInputQueue and dispatching them to a headless Obsidian GUI. Run with
+ * "-prof gc" to measure allocation per operation.
+ * <p>
+ * Setup fails unless the queue and the conversions allocate nothing in
+ * steady state, beyond what Obsidian allocates when the same events are fired
+ * at it directly. The check runs with every benchmark in this class, for
+ * instance {@code ./gradlew jmh -PjmhArgs="InputDispatchBenchmark"}.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class InputDispatchBenchmark {
+    // *************************************************************************
+    // constants
+
+    /**
+     * tolerated excess allocation of the queued path (in bytes per event).
+     * The JVM's own bookkeeping may add a few kilobytes to a measurement,
+     * but even one 16-byte object per drain (192 events) exceeds this.
+     */
+    final private static double maxExtraBytesPerEvent = 0.03;
+    /**
+     * number of events in each keystroke (a press, a character, and a
+     * release)
+     */
+    final private static int eventsPerKeystroke = 3;
+    /**
+     * number of keystrokes in each allocation measurement
+     */
+    final private static int measuredKeystrokes = 100_000;
+    /**
+     * number of keystrokes to simulate before measuring
+     */
+    final private static int warmupKeystrokes = 200_000;
+    // *************************************************************************
+    // fields
+
+    /**
+     * number of GLFW callbacks per simulated frame
+     */
+    @Param({"1", "100", "1000"})
+    public int eventsPerFrame;
+    /**
+     * simulated cursor position
+     */
+    private double cursorX = 100.;
+    private double cursorY = 100.;
+    /**
+     * queue under test
+     */
+    private GuiInputQueue queue;
+    /**
+     * GUI to receive the events
+     */
+    private ObsidianUI gui;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Explicit no-arg constructor to avoid javadoc warnings from JDK 18+.
+     */
+    public InputDispatchBenchmark() {
+        // do nothing
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Create the GUI and the queue.
+     */
+    @Setup
+    public void setup() {
+        this.gui = ObsidianUI.createHeadless();
+        this.queue = new GuiInputQueue(256, () -> cursorX, () -> cursorY);
+        assertAllocationFree();
+    }
+
+    /**
+     * Clean up the GUI.
+     */
+    @TearDown
+    public void tearDown() {
+        gui.cleanup();
+    }
+
+    /**
+     * Convert typed code points to characters, without dispatching them.
+     * Should allocate nothing in steady state.
+     *
+     * @param blackhole for consuming results (not null)
+     */
+    @Benchmark
+    public void characterConversion(Blackhole blackhole) {
+        for (int i = 0; i < eventsPerFrame; ++i) {
+            char[] chars = Convert.codePointToChars('a' + i % 26);
+            blackhole.consume(chars);
+        }
+    }
+
+    /**
+     * Simulate a frame of keyboard input: each callback is a key press,
+     * a typed character, and a key release.
+     *
+     * @return the number of events dispatched
+     */
+    @Benchmark
+    public int keyboardFrame() {
+        int result = 0;
+        for (int i = 0; i < eventsPerFrame; ++i) {
+            int glfwKey = GLFW.GLFW_KEY_A + i % 26;
+            queue.addKey(glfwKey, true);
+            queue.addCharacter('a' + i % 26);
+            queue.addKey(glfwKey, false);
+            if (i % 64 == 63) { // keep the queue from overflowing
+                result += queue.drain(gui);
+            }
+        }
+        queue.flush();
+        result += queue.drain(gui);
+
+        return result;
+    }
+
+    /**
+     * Simulate a frame of mouse motion from a high-rate mouse. The motion is
+     * merged into a single event.
+     *
+     * @return the number of events dispatched
+     */
+    @Benchmark
+    public int mouseMotionFrame() {
+        for (int i = 0; i < eventsPerFrame; ++i) {
+            cursorX = 100. + i % 50;
+            queue.addMouseMove();
+        }
+        queue.flush();
+        int result = queue.drain(gui);
+
+        return result;
+    }
+
+    /**
+     * Simulate a frame of scrolling. The deltas are merged into a single
+     * event.
+     *
+     * @return the number of events dispatched
+     */
+    @Benchmark
+    public int scrollFrame() {
+        for (int i = 0; i < eventsPerFrame; ++i) {
+            queue.addScroll(0., 0.1);
+        }
+        queue.flush();
+        int result = queue.drain(gui);
+
+        return result;
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Verify that steady-state keystrokes allocate no more through the queue
+     * than the same events fired directly at the GUI. The difference is
+     * compared per event, in floating point, so a small per-event
+     * allocation isn't truncated to zero.
+     *
+     * @throws IllegalStateException if the queue path allocates
+     */
+    private void assertAllocationFree() {
+        com.sun.management.ThreadMXBean threads
+                = (com.sun.management.ThreadMXBean) ManagementFactory
+                        .getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        // Warm up both paths, so caches are populated and code is compiled.
+        typeDirect(warmupKeystrokes);
+        typeQueued(warmupKeystrokes);
+
+        long startBytes = threads.getThreadAllocatedBytes(threadId);
+        typeDirect(measuredKeystrokes);
+        long directBytes
+                = threads.getThreadAllocatedBytes(threadId) - startBytes;
+
+        startBytes = threads.getThreadAllocatedBytes(threadId);
+        typeQueued(measuredKeystrokes);
+        long queuedBytes
+                = threads.getThreadAllocatedBytes(threadId) - startBytes;
+
+        int numEvents = eventsPerKeystroke * measuredKeystrokes;
+        double extraPerEvent = (queuedBytes - directBytes) / (double) numEvents;
+        if (extraPerEvent > maxExtraBytesPerEvent) {
+            throw new IllegalStateException(
+                    "Queued input allocates " + extraPerEvent
+                    + " extra bytes per event (queued=" + queuedBytes
+                    + ", direct=" + directBytes + ")");
+        }
+    }
+
+    /**
+     * Fire the specified number of keystrokes directly at the GUI, bypassing
+     * the queue. Each keystroke is a press, a character, and a release.
+     *
+     * @param numKeystrokes the number of keystrokes (&ge;0)
+     */
+    private void typeDirect(int numKeystrokes) {
+        for (int i = 0; i < numKeystrokes; ++i) {
+            Key key = Convert.convertGlfwKey(GLFW.GLFW_KEY_A + i % 26);
+            char[] chars = Convert.codePointToChars('a' + i % 26);
+            gui.getInput().fireKeyEvent(key, true);
+            gui.getInput().fireCharacterEvent(chars);
+            gui.getInput().fireKeyEvent(key, false);
+        }
+    }
+
+    /**
+     * Simulate the specified number of keystrokes through the queue, draining
+     * it regularly. Each keystroke is a press, a character, and a release.
+     *
+     * @param numKeystrokes the number of keystrokes (&ge;0)
+     */
+    private void typeQueued(int numKeystrokes) {
+        for (int i = 0; i < numKeystrokes; ++i) {
+            int glfwKey = GLFW.GLFW_KEY_A + i % 26;
+            queue.addKey(glfwKey, true);
+            queue.addCharacter('a' + i % 26);
+            queue.addKey(glfwKey, false);
+            if (i % 64 == 63) {
+                queue.drain(gui);
+            }
+        }
+        queue.flush();
+        queue.drain(gui);
+    }
+}
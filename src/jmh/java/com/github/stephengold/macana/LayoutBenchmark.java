@@ -0,0 +1,167 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+import example.ObsidianContext;
+import java.util.concurrent.TimeUnit;
+import myworld.obsidian.ObsidianUI;
+import myworld.obsidian.display.skin.StyleClass;
+import org.lwjgl.opengl.GL11C;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark layout and rendering of a SimpleLayout containing a column of
+ * TextButtons. Requires OpenGL; see {@link OffscreenGui}.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+public class LayoutBenchmark {
+    // *************************************************************************
+    // fields
+
+    /**
+     * number of buttons in the column
+     */
+    @Param({"10", "100", "500"})
+    public int numButtons;
+    /**
+     * count of invocations, used to vary the text
+     */
+    private int counter;
+    /**
+     * offscreen GUI under test
+     */
+    private OffscreenGui offscreen;
+    /**
+     * button whose text changes during each layout
+     */
+    private TextButton firstButton;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Explicit no-arg constructor to avoid javadoc warnings from JDK 18+.
+     */
+    public LayoutBenchmark() {
+        // do nothing
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Create the GUI and populate it with buttons.
+     */
+    @Setup
+    public void setup() {
+        this.offscreen = new OffscreenGui(1280, 720);
+        ObsidianUI gui = offscreen.getGui();
+
+        SimpleLayout layout = new SimpleLayout();
+        gui.getRoot().addChild(layout);
+        StyleClass style = gui.getStyle("ExampleText");
+        for (int i = 0; i < numButtons; ++i) {
+            TextButton button = new TextButton("Button " + i, style);
+            layout.addToColumn(button);
+            if (i == 0) {
+                this.firstButton = button;
+            }
+        }
+        gui.update(0f);
+    }
+
+    /**
+     * Destroy the GUI.
+     */
+    @TearDown
+    public void tearDown() {
+        offscreen.close();
+    }
+
+    /**
+     * Change the text of one button and update the GUI, which re-runs layout.
+     */
+    @Benchmark
+    public void layout() {
+        ++counter;
+        firstButton.setText((counter & 1) == 0 ? "Even" : "Odd");
+        offscreen.getGui().update(0f);
+    }
+
+    /**
+     * Render the whole GUI and wait for the GPU to finish.
+     */
+    @Benchmark
+    public void renderFull() {
+        ObsidianContext context = offscreen.getContext();
+        context.render();
+        finish(context);
+    }
+
+    /**
+     * Render the GUI, clearing and resolving only a button-sized region, and
+     * wait for the GPU to finish.
+     */
+    @Benchmark
+    public void renderPartial() {
+        ObsidianContext context = offscreen.getContext();
+        context.render(0, 0, 120, 40);
+        finish(context);
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Wait (in the main context) until the most recent GUI texture is
+     * complete.
+     *
+     * @param context the rendering context (not null)
+     */
+    private static void finish(ObsidianContext context) {
+        context.acquireTexture();
+        context.releaseTexture();
+        GL11C.glFinish();
+    }
+}
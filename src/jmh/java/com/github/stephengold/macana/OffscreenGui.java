@@ -0,0 +1,133 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+import example.ExampleComponentSkin;
+import example.ObsidianContext;
+import myworld.obsidian.ObsidianUI;
+import myworld.obsidian.display.Colors;
+import myworld.obsidian.display.skin.UISkin;
+import myworld.obsidian.display.skin.obsidian.ObsidianSkin;
+import myworld.obsidian.geometry.Dimension2D;
+import org.lwjgl.glfw.GLFW;
+import org.lwjgl.opengl.GL;
+
+/**
+ * An Obsidian GUI rendered by an ObsidianContext in a hidden GLFW window, for
+ * GPU-dependent benchmarks. To run without a GPU, use the "jmhLlvmpipe" task
+ * (which selects Mesa's software renderer) and, if there's no display, wrap
+ * Gradle in xvfb-run.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+final class OffscreenGui {
+    // *************************************************************************
+    // fields
+
+    /**
+     * handle of the hidden window
+     */
+    final private long windowHandle;
+    /**
+     * rendering context for the GUI
+     */
+    final private ObsidianContext context;
+    /**
+     * the GUI
+     */
+    final private ObsidianUI gui;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Create a hidden window and a skinned GUI of the specified size.
+     *
+     * @param width the width of the GUI (in pixels, &gt;0)
+     * @param height the height of the GUI (in pixels, &gt;0)
+     */
+    OffscreenGui(int width, int height) {
+        if (!GLFW.glfwInit()) {
+            throw new IllegalStateException("Failed to initialize GLFW.");
+        }
+        GLFW.glfwDefaultWindowHints();
+        GLFW.glfwWindowHint(GLFW.GLFW_CONTEXT_VERSION_MAJOR, 3);
+        GLFW.glfwWindowHint(GLFW.GLFW_CONTEXT_VERSION_MINOR, 3);
+        GLFW.glfwWindowHint(GLFW.GLFW_OPENGL_FORWARD_COMPAT, GLFW.GLFW_TRUE);
+        GLFW.glfwWindowHint(
+                GLFW.GLFW_OPENGL_PROFILE, GLFW.GLFW_OPENGL_CORE_PROFILE);
+        GLFW.glfwWindowHint(GLFW.GLFW_VISIBLE, GLFW.GLFW_FALSE);
+        this.windowHandle
+                = GLFW.glfwCreateWindow(width, height, "benchmark", 0L, 0L);
+        if (windowHandle == 0L) {
+            throw new IllegalStateException("Failed to create a window.");
+        }
+        GLFW.glfwMakeContextCurrent(windowHandle);
+        GL.createCapabilities();
+
+        this.gui = ObsidianUI.createHeadless();
+        gui.clearColor().set(Colors.TRANSPARENT);
+        UISkin skin = ObsidianSkin.create();
+        skin.addComponentSkin(ExampleComponentSkin.create());
+        gui.useSkin(skin);
+
+        this.context = new ObsidianContext(gui);
+        Dimension2D size = new Dimension2D(width, height);
+        context.init(size, 4, windowHandle);
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Destroy the context and the window.
+     */
+    void close() {
+        context.close();
+        gui.cleanup();
+        GLFW.glfwDestroyWindow(windowHandle);
+        GLFW.glfwTerminate();
+    }
+
+    /**
+     * Access the rendering context.
+     *
+     * @return the pre-existing instance (not null)
+     */
+    ObsidianContext getContext() {
+        return context;
+    }
+
+    /**
+     * Access the GUI.
+     *
+     * @return the pre-existing instance (not null)
+     */
+    ObsidianUI getGui() {
+        return gui;
+    }
+}
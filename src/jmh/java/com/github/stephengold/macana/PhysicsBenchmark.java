@@ -0,0 +1,170 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.collision.shapes.CollisionShape;
+import com.jme3.bullet.collision.shapes.PlaneCollisionShape;
+import com.jme3.bullet.collision.shapes.SphereCollisionShape;
+import com.jme3.bullet.objects.PhysicsBody;
+import com.jme3.bullet.objects.PhysicsRigidBody;
+import com.jme3.math.Plane;
+import com.jme3.math.Vector3f;
+import com.jme3.system.NativeLibraryLoader;
+import java.io.File;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark stepping a HelloObsidian-style PhysicsSpace containing a plane and
+ * a grid of falling balls, and exporting the transforms of its bodies.
+ * Requires the native library downloaded by the
+ * "downloadNatives" task.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+public class PhysicsBenchmark {
+    // *************************************************************************
+    // constants
+
+    /**
+     * simulation time per step (in seconds)
+     */
+    final private static float timeStep = 1f / 60f;
+    // *************************************************************************
+    // fields
+
+    /**
+     * number of balls
+     */
+    @Param({"1", "1000", "5000"})
+    public int numBalls;
+    /**
+     * space under test
+     */
+    private PhysicsSpace space;
+    /**
+     * exporter under test, re-used across iterations
+     */
+    final private TransformExporter exporter = new TransformExporter();
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Explicit no-arg constructor to avoid javadoc warnings from JDK 18+.
+     */
+    public PhysicsBenchmark() {
+        // do nothing
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Load the native library.
+     */
+    @Setup(Level.Trial)
+    public void loadNatives() {
+        String home = System.getProperty("user.home");
+        File downloadDirectory = new File(home, "Downloads");
+        NativeLibraryLoader.loadLibbulletjme(
+                true, downloadDirectory, "Release", "Sp");
+    }
+
+    /**
+     * Populate a new space, so each iteration starts with falling balls.
+     */
+    @Setup(Level.Iteration)
+    public void populate() {
+        this.space = new PhysicsSpace(PhysicsSpace.BroadphaseType.DBVT);
+
+        Plane plane = new Plane(Vector3f.UNIT_Y, -1f);
+        CollisionShape planeShape = new PlaneCollisionShape(plane);
+        PhysicsRigidBody floor
+                = new PhysicsRigidBody(planeShape, PhysicsBody.massForStatic);
+        space.addCollisionObject(floor);
+
+        CollisionShape ballShape = new SphereCollisionShape(0.3f);
+        int side = (int) Math.ceil(Math.sqrt(numBalls));
+        for (int i = 0; i < numBalls; ++i) {
+            PhysicsRigidBody ball = new PhysicsRigidBody(ballShape, 1f);
+            float x = 0.7f * (i % side);
+            float z = 0.7f * (i / side);
+            ball.setPhysicsLocation(new Vector3f(x, 1f, z));
+            space.addCollisionObject(ball);
+        }
+    }
+
+    /**
+     * Destroy the space.
+     */
+    @TearDown(Level.Iteration)
+    public void destroy() {
+        space.destroy();
+    }
+
+    /**
+     * Export the transforms of all rigid bodies into a direct buffer.
+     *
+     * @return the buffer (to defeat dead-code elimination)
+     */
+    @Benchmark
+    public FloatBuffer export() {
+        FloatBuffer result = exporter.export(space);
+        assert result.limit() == TransformExporter.stride * (numBalls + 1);
+
+        return result;
+    }
+
+    /**
+     * Advance the simulation by one fixed step.
+     */
+    @Benchmark
+    public void step() {
+        space.update(timeStep, 0);
+    }
+}
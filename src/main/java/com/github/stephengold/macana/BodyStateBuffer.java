@@ -0,0 +1,251 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.collision.shapes.CollisionShape;
+import com.jme3.bullet.objects.PhysicsRigidBody;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The dynamic state of the rigid bodies in a PhysicsSpace, saved in primitive
+ * arrays so it can be restored in place, without re-creating shapes, bodies,
+ * or visuals.
+ * <p>
+ * For each body, 14 floats are saved: location x, y, z, rotation x, y, z, w,
+ * linear velocity x, y, z, angular velocity x, y, z, and deactivation time,
+ * plus whether the body was active.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+final class BodyStateBuffer {
+    // *************************************************************************
+    // constants
+
+    /**
+     * number of floats per body
+     */
+    final private static int stride = 14;
+    // *************************************************************************
+    // fields
+
+    /**
+     * whether each body was active when saved
+     */
+    private boolean[] active = new boolean[0];
+    /**
+     * saved state, {@code stride} floats per body
+     */
+    private float[] data = new float[0];
+    /**
+     * number of bodies saved
+     */
+    private int count;
+    /**
+     * bodies whose state was saved
+     */
+    private PhysicsRigidBody[] bodies = new PhysicsRigidBody[0];
+    /**
+     * temporary storage for rotations
+     */
+    final private Quaternion tmpRotation = new Quaternion();
+    /**
+     * temporary storage for vectors
+     */
+    final private Vector3f tmpVector = new Vector3f();
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate an empty buffer.
+     */
+    BodyStateBuffer() {
+        // do nothing
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Discard the saved state, releasing references to the bodies.
+     */
+    void clear() {
+        Arrays.fill(bodies, 0, count, null);
+        this.count = 0;
+    }
+
+    /**
+     * Return the number of bodies whose state is saved.
+     *
+     * @return the count (&ge;0)
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * Discard the saved state of each body that uses the specified shape and
+     * is no longer in a PhysicsSpace, so neither the bodies nor the shape
+     * remain reachable from the buffer.
+     *
+     * @param shape the shape to look for (not null, unaffected)
+     * @return the number of bodies forgotten (&ge;0)
+     */
+    int forget(CollisionShape shape) {
+        int kept = 0;
+        for (int i = 0; i < count; ++i) {
+            PhysicsRigidBody body = bodies[i];
+            if (body.getCollisionShape() == shape && !body.isInWorld()) {
+                continue;
+            }
+            if (kept != i) {
+                bodies[kept] = body;
+                active[kept] = active[i];
+                System.arraycopy(
+                        data, i * stride, data, kept * stride, stride);
+            }
+            ++kept;
+        }
+
+        int result = count - kept;
+        Arrays.fill(bodies, kept, count, null);
+        this.count = kept;
+
+        return result;
+    }
+
+    /**
+     * Restore the saved state to each saved body that's still in a
+     * PhysicsSpace. Bodies added since the state was saved are unaffected.
+     * Forces and torques are cleared. Bodies saved active are activated.
+     * Bodies saved inactive get their saved velocities and deactivation time
+     * without being activated, so any that were woken since are put back to
+     * sleep by the next step. Must not be invoked while the space is being
+     * stepped.
+     *
+     * @return the number of bodies restored (&ge;0)
+     */
+    int restore() {
+        int result = 0;
+        for (int i = 0; i < count; ++i) {
+            PhysicsRigidBody body = bodies[i];
+            if (!body.isInWorld()) {
+                continue;
+            }
+
+            int offset = i * stride;
+            tmpVector.set(data[offset], data[offset + 1], data[offset + 2]);
+            body.setPhysicsLocation(tmpVector);
+            tmpRotation.set(data[offset + 3], data[offset + 4],
+                    data[offset + 5], data[offset + 6]);
+            body.setPhysicsRotation(tmpRotation);
+
+            if (body.isDynamic()) {
+                tmpVector.set(data[offset + 7], data[offset + 8],
+                        data[offset + 9]);
+                body.setLinearVelocity(tmpVector);
+                tmpVector.set(data[offset + 10], data[offset + 11],
+                        data[offset + 12]);
+                body.setAngularVelocity(tmpVector);
+                body.clearForces();
+                /*
+                 * Libbulletjme can't force the sleeping state, but a body
+                 * saved inactive gets back a timer that already exceeds
+                 * Bullet's deactivation delay, along with velocities below
+                 * the sleeping thresholds, so its island sleeps again.
+                 */
+                body.setDeactivationTime(data[offset + 13]);
+                if (active[i]) {
+                    body.activate(true);
+                }
+            }
+            ++result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Save the state of every rigid body in the specified space, replacing
+     * any state saved previously. Must not be invoked while the space is
+     * being stepped.
+     *
+     * @param space the space to save (not null, unaffected)
+     */
+    void save(PhysicsSpace space) {
+        clear();
+
+        Collection<PhysicsRigidBody> rigidBodies = space.getRigidBodyList();
+        int numBodies = rigidBodies.size();
+        if (bodies.length < numBodies) {
+            this.bodies = new PhysicsRigidBody[numBodies];
+            this.active = new boolean[numBodies];
+            this.data = new float[numBodies * stride];
+        }
+
+        for (PhysicsRigidBody body : rigidBodies) {
+            int offset = count * stride;
+            body.getPhysicsLocation(tmpVector);
+            data[offset] = tmpVector.x;
+            data[offset + 1] = tmpVector.y;
+            data[offset + 2] = tmpVector.z;
+
+            body.getPhysicsRotation(tmpRotation);
+            data[offset + 3] = tmpRotation.getX();
+            data[offset + 4] = tmpRotation.getY();
+            data[offset + 5] = tmpRotation.getZ();
+            data[offset + 6] = tmpRotation.getW();
+
+            if (body.isDynamic()) {
+                body.getLinearVelocity(tmpVector);
+            } else {
+                tmpVector.set(0f, 0f, 0f);
+            }
+            data[offset + 7] = tmpVector.x;
+            data[offset + 8] = tmpVector.y;
+            data[offset + 9] = tmpVector.z;
+
+            if (body.isDynamic()) {
+                body.getAngularVelocity(tmpVector);
+            } else {
+                tmpVector.set(0f, 0f, 0f);
+            }
+            data[offset + 10] = tmpVector.x;
+            data[offset + 11] = tmpVector.y;
+            data[offset + 12] = tmpVector.z;
+            data[offset + 13] = body.getDeactivationTime();
+
+            active[count] = body.isActive();
+            bodies[count] = body;
+            ++count;
+        }
+    }
+}
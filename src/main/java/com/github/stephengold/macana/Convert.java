@@ -28,6 +28,7 @@
  */
 package com.github.stephengold.macana;
 
+import java.util.Arrays;
 import myworld.obsidian.input.Key;
 import myworld.obsidian.input.MouseButton;
 import org.lwjgl.glfw.GLFW;
@@ -38,6 +39,64 @@ import org.lwjgl.glfw.GLFW;
  * @author Stephen Gold sgold@sonic.net
  */
 final class Convert {
+    // *************************************************************************
+    // fields
+
+    /**
+     * shared single-character arrays for the Basic Multilingual Plane,
+     * allocated lazily in pages of 256 code points
+     */
+    final private static char[][][] bmpChars = new char[256][][];
+    /**
+     * distinct bit for each modifier key, indexed by GLFW key code (0 for
+     * non-modifier keys)
+     */
+    final private static int[] glfwToModifierKey
+            = new int[GLFW.GLFW_KEY_LAST + 1];
+    /**
+     * GLFW modifier bit for each modifier-key bit, indexed by bit position
+     */
+    final private static int[] modifierKeyToMod = {
+        GLFW.GLFW_MOD_ALT, GLFW.GLFW_MOD_ALT,
+        GLFW.GLFW_MOD_CONTROL, GLFW.GLFW_MOD_CONTROL,
+        GLFW.GLFW_MOD_SHIFT, GLFW.GLFW_MOD_SHIFT,
+        GLFW.GLFW_MOD_SUPER, GLFW.GLFW_MOD_SUPER
+    };
+    /**
+     * GLFW key code for each Obsidian key, indexed by ordinal
+     */
+    final private static int[] keyToGlfw;
+    /**
+     * Obsidian key for each GLFW key code
+     */
+    final private static Key[] glfwToKey = new Key[GLFW.GLFW_KEY_LAST + 1];
+    // *************************************************************************
+    // static initializer
+
+    static {
+        Key[] allKeys = Key.values();
+        keyToGlfw = new int[allKeys.length];
+        Arrays.fill(keyToGlfw, GLFW.GLFW_KEY_UNKNOWN);
+
+        for (int glfwKey = 0; glfwKey <= GLFW.GLFW_KEY_LAST; ++glfwKey) {
+            Key key = lookupGlfwKey(glfwKey);
+            glfwToKey[glfwKey] = key;
+            if (key != Key.UNKNOWN
+                    && keyToGlfw[key.ordinal()] == GLFW.GLFW_KEY_UNKNOWN) {
+                keyToGlfw[key.ordinal()] = glfwKey;
+            }
+        }
+
+        // Left and right keys get separate bits, so each side is tracked.
+        glfwToModifierKey[GLFW.GLFW_KEY_LEFT_ALT] = 1 << 0;
+        glfwToModifierKey[GLFW.GLFW_KEY_RIGHT_ALT] = 1 << 1;
+        glfwToModifierKey[GLFW.GLFW_KEY_LEFT_CONTROL] = 1 << 2;
+        glfwToModifierKey[GLFW.GLFW_KEY_RIGHT_CONTROL] = 1 << 3;
+        glfwToModifierKey[GLFW.GLFW_KEY_LEFT_SHIFT] = 1 << 4;
+        glfwToModifierKey[GLFW.GLFW_KEY_RIGHT_SHIFT] = 1 << 5;
+        glfwToModifierKey[GLFW.GLFW_KEY_LEFT_SUPER] = 1 << 6;
+        glfwToModifierKey[GLFW.GLFW_KEY_RIGHT_SUPER] = 1 << 7;
+    }
     // *************************************************************************
     // constructors
 
@@ -50,12 +109,96 @@ final class Convert {
     // new methods exposed
 
     /**
+     * Convert a Unicode code point to UTF-16 characters. For code points in
+     * the Basic Multilingual Plane, the result is shared and allocated only
+     * once, so callers must not modify it.
+     *
+     * @param codePoint the code point to convert
+     * @return an array of length 1 or 2 (not null)
+     */
+    static char[] codePointToChars(int codePoint) {
+        if (codePoint < 0 || codePoint > Character.MAX_VALUE) {
+            char[] result = Character.toChars(codePoint);
+            return result;
+        }
+
+        int pageIndex = codePoint >> 8;
+        char[][] page = bmpChars[pageIndex];
+        if (page == null) {
+            page = new char[256][];
+            bmpChars[pageIndex] = page;
+        }
+
+        int entryIndex = codePoint & 0xff;
+        char[] result = page[entryIndex];
+        if (result == null) {
+            result = new char[]{(char) codePoint};
+            page[entryIndex] = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Convert a GLFW key code to an Obsidian key, using a table built during
+     * class initialization.
+     * <p>
      * TODO The Obsidian library should provide this method.
      *
      * @param glfwKey a GLFW key code
-     * @return the corresponding Obsidian key
+     * @return the corresponding Obsidian key (not null)
      */
     static Key convertGlfwKey(int glfwKey) {
+        Key result;
+        if (glfwKey >= 0 && glfwKey < glfwToKey.length) {
+            result = glfwToKey[glfwKey];
+        } else {
+            result = Key.UNKNOWN;
+        }
+
+        return result;
+    }
+
+    /**
+     * Convert a set of held modifier keys to a GLFW modifier bitmask. A
+     * modifier is active while either its left key or its right key is held.
+     *
+     * @param heldKeys the held modifier keys (a combination of bits returned
+     * by {@link #modifierKeyBit(int)})
+     * @return a combination of GLFW_MOD_SHIFT, GLFW_MOD_CONTROL,
+     * GLFW_MOD_ALT, and GLFW_MOD_SUPER
+     */
+    static int convertModifierKeys(int heldKeys) {
+        int result = 0;
+        for (int i = 0; i < modifierKeyToMod.length; ++i) {
+            if ((heldKeys & (1 << i)) != 0) {
+                result |= modifierKeyToMod[i];
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Convert an Obsidian key to a GLFW key code, for instance when
+     * persisting key bindings.
+     *
+     * @param key the Obsidian key (not null)
+     * @return the corresponding GLFW key code, or GLFW_KEY_UNKNOWN if none
+     */
+    static int convertKeyToGlfw(Key key) {
+        int result = keyToGlfw[key.ordinal()];
+        return result;
+    }
+
+    /**
+     * Look up a GLFW key code using a switch. Used to build the lookup tables
+     * and as a reference for benchmarks.
+     *
+     * @param glfwKey a GLFW key code
+     * @return the corresponding Obsidian key (not null)
+     */
+    static Key lookupGlfwKey(int glfwKey) {
         Key result = switch (glfwKey) {
             case GLFW.GLFW_KEY_0 -> Key.KEY_0;
             case GLFW.GLFW_KEY_1 -> Key.KEY_1;
@@ -193,6 +336,22 @@ final class Convert {
         return result;
     }
 
+    /**
+     * Return the bit that represents the specified modifier key in a set of
+     * held keys. The left and right keys of each modifier have distinct bits.
+     *
+     * @param glfwKey a GLFW key code
+     * @return a single bit, or 0 if the key isn't a modifier
+     */
+    static int modifierKeyBit(int glfwKey) {
+        int result = 0;
+        if (glfwKey >= 0 && glfwKey < glfwToModifierKey.length) {
+            result = glfwToModifierKey[glfwKey];
+        }
+
+        return result;
+    }
+
     /**
      * TODO The Obsidian library should provide this method.
      *
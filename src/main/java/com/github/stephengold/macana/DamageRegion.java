@@ -0,0 +1,174 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+/**
+ * The portion of a GUI surface that needs to be redrawn, approximated by a
+ * single axis-aligned rectangle in GUI pixels (origin at the upper left).
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+final class DamageRegion {
+    // *************************************************************************
+    // fields
+
+    /**
+     * true if the entire surface is damaged, otherwise false
+     */
+    private boolean isFull;
+    /**
+     * right edge of the damaged rectangle (exclusive)
+     */
+    private int maxX;
+    /**
+     * bottom edge of the damaged rectangle (exclusive)
+     */
+    private int maxY;
+    /**
+     * left edge of the damaged rectangle (inclusive)
+     */
+    private int minX;
+    /**
+     * top edge of the damaged rectangle (inclusive)
+     */
+    private int minY;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate a region in which the entire surface is damaged.
+     */
+    DamageRegion() {
+        this.isFull = true;
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Enlarge the region to include the specified rectangle.
+     *
+     * @param x the left edge of the rectangle (in pixels)
+     * @param y the top edge of the rectangle (in pixels)
+     * @param width the width of the rectangle (in pixels, &ge;0)
+     * @param height the height of the rectangle (in pixels, &ge;0)
+     */
+    synchronized void add(int x, int y, int width, int height) {
+        assert width >= 0 : width;
+        assert height >= 0 : height;
+
+        if (isFull || width == 0 || height == 0) {
+            return;
+        }
+
+        if (isEmpty()) {
+            this.minX = x;
+            this.minY = y;
+            this.maxX = x + width;
+            this.maxY = y + height;
+        } else {
+            this.minX = Math.min(minX, x);
+            this.minY = Math.min(minY, y);
+            this.maxX = Math.max(maxX, x + width);
+            this.maxY = Math.max(maxY, y + height);
+        }
+    }
+
+    /**
+     * Enlarge the region to include the entire surface.
+     */
+    synchronized void addAll() {
+        this.isFull = true;
+    }
+
+    /**
+     * Reset the region to empty.
+     */
+    synchronized void clear() {
+        this.isFull = false;
+        this.minX = 0;
+        this.minY = 0;
+        this.maxX = 0;
+        this.maxY = 0;
+    }
+
+    /**
+     * Return the height of the damaged rectangle.
+     *
+     * @return the height (in pixels, &ge;0)
+     */
+    synchronized int height() {
+        return maxY - minY;
+    }
+
+    /**
+     * Test whether the region is empty.
+     *
+     * @return true if nothing is damaged, otherwise false
+     */
+    synchronized boolean isEmpty() {
+        boolean result = !isFull && (maxX <= minX || maxY <= minY);
+        return result;
+    }
+
+    /**
+     * Test whether the entire surface is damaged.
+     *
+     * @return true if the entire surface is damaged, otherwise false
+     */
+    synchronized boolean isFull() {
+        return isFull;
+    }
+
+    /**
+     * Return the width of the damaged rectangle.
+     *
+     * @return the width (in pixels, &ge;0)
+     */
+    synchronized int width() {
+        return maxX - minX;
+    }
+
+    /**
+     * Return the left edge of the damaged rectangle.
+     *
+     * @return the X coordinate (in pixels)
+     */
+    synchronized int x() {
+        return minX;
+    }
+
+    /**
+     * Return the top edge of the damaged rectangle.
+     *
+     * @return the Y coordinate (in pixels)
+     */
+    synchronized int y() {
+        return minY;
+    }
+}
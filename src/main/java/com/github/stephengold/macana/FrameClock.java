@@ -0,0 +1,231 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+/**
+ * A frame clock that converts elapsed time into a whole number of fixed
+ * physics timesteps plus an interpolation fraction. Each frame's elapsed
+ * time is capped at {@code maxSubsteps} timesteps, so a long stall (such as
+ * a GC pause or a window resize) can't cause a spiral of catch-up steps:
+ * the excess time is dropped instead. Allocation-free.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+final class FrameClock {
+    // *************************************************************************
+    // fields
+
+    /**
+     * true once the clock has been advanced using a system time
+     */
+    private boolean hasTime;
+    /**
+     * fraction of a timestep left over after the most recent advance (&ge;0,
+     * &lt;1)
+     */
+    private float alpha;
+    /**
+     * (capped) elapsed time of the most recent frame (in seconds, &ge;0)
+     */
+    private float frameSeconds;
+    /**
+     * fixed physics timestep (in seconds, &gt;0)
+     */
+    private float timestep = 1f / 60f;
+    /**
+     * maximum number of timesteps per frame (&ge;1)
+     */
+    private int maxSubsteps = 4;
+    /**
+     * number of timesteps due during the most recent frame (&ge;0)
+     */
+    private int substeps;
+    /**
+     * simulation time not yet consumed by timesteps (in seconds, &ge;0)
+     */
+    private double accumulator;
+    /**
+     * total simulated time, excluding dropped time (in seconds)
+     */
+    private double elapsedSeconds;
+    /**
+     * system time as of the most recent advance (in nanoseconds)
+     */
+    private long lastNanoTime;
+    /**
+     * number of frames advanced
+     */
+    private long frameCount;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate a clock with a 60-Hz timestep and at most 4 substeps per
+     * frame.
+     */
+    FrameClock() {
+        // do nothing
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Advance the clock by a fixed interval, for deterministic runs.
+     *
+     * @param seconds the elapsed time (in seconds, &ge;0)
+     * @return the number of timesteps due (&ge;0, &le;maxSubsteps)
+     */
+    int advanceBy(float seconds) {
+        assert seconds >= 0f : seconds;
+
+        float capped = Math.min(seconds, maxSubsteps * timestep);
+        this.frameSeconds = capped;
+        this.accumulator += capped;
+        this.elapsedSeconds += capped;
+        ++frameCount;
+
+        int steps = (int) (accumulator / timestep);
+        steps = Math.min(steps, maxSubsteps);
+        this.accumulator -= steps * (double) timestep;
+        if (accumulator >= timestep) {
+            // Rounding left more than a whole step; drop it.
+            this.accumulator = 0.;
+        }
+        this.substeps = steps;
+        this.alpha = (float) (accumulator / timestep);
+
+        return steps;
+    }
+
+    /**
+     * Advance the clock to the specified system time. The first invocation
+     * counts as zero elapsed time.
+     *
+     * @param nanoTime the current system time (in nanoseconds)
+     * @return the number of timesteps due (&ge;0, &le;maxSubsteps)
+     */
+    int advanceTo(long nanoTime) {
+        float seconds = hasTime ? 1e-9f * (nanoTime - lastNanoTime) : 0f;
+        this.hasTime = true;
+        this.lastNanoTime = nanoTime;
+
+        int result = advanceBy(Math.max(seconds, 0f));
+        return result;
+    }
+
+    /**
+     * Return the interpolation fraction: how far the rendered frame lies
+     * between the most recent timestep and the next one. Instanced bodies are
+     * drawn this far between their 2 most recent captured transforms.
+     *
+     * @return the fraction (&ge;0, &lt;1)
+     */
+    float alpha() {
+        return alpha;
+    }
+
+    /**
+     * Return the total simulated time, excluding time dropped by the cap.
+     *
+     * @return the time (in seconds, &ge;0)
+     */
+    double elapsedSeconds() {
+        return elapsedSeconds;
+    }
+
+    /**
+     * Return the number of frames advanced.
+     *
+     * @return the count (&ge;0)
+     */
+    long frameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Return the (capped) elapsed time of the most recent frame.
+     *
+     * @return the interval (in seconds, &ge;0)
+     */
+    float frameSeconds() {
+        return frameSeconds;
+    }
+
+    /**
+     * Return the maximum number of timesteps per frame.
+     *
+     * @return the count (&ge;1)
+     */
+    int maxSubsteps() {
+        return maxSubsteps;
+    }
+
+    /**
+     * Alter the maximum number of timesteps per frame.
+     *
+     * @param count the desired count (&ge;1, default=4)
+     */
+    void setMaxSubsteps(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count = " + count);
+        }
+        this.maxSubsteps = count;
+    }
+
+    /**
+     * Alter the fixed physics timestep.
+     *
+     * @param seconds the desired timestep (in seconds, &gt;0, default=1/60)
+     */
+    void setTimestep(float seconds) {
+        if (!(seconds > 0f)) {
+            throw new IllegalArgumentException("seconds = " + seconds);
+        }
+        this.timestep = seconds;
+        this.accumulator = 0.;
+    }
+
+    /**
+     * Return the number of timesteps due during the most recent frame.
+     *
+     * @return the count (&ge;0, &le;maxSubsteps)
+     */
+    int substeps() {
+        return substeps;
+    }
+
+    /**
+     * Return the fixed physics timestep.
+     *
+     * @return the timestep (in seconds, &gt;0)
+     */
+    float timestep() {
+        return timestep;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+/**
+ * Phases of a MacanaApp frame, for timing instrumentation.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+enum FramePhase {
+    // *************************************************************************
+    // values
+
+    /**
+     * the entire frame, from one render() invocation to the next
+     */
+    FRAME,
+    /**
+     * a single physics timestep (the stepping time of a frame divided by the
+     * number of timesteps, recorded only for frames that step)
+     */
+    PHYSICS,
+    /**
+     * waiting for a pipelined physics step to complete
+     */
+    PHYSICS_WAIT,
+    /**
+     * streaming transforms for (and drawing) instanced bodies
+     */
+    INSTANCED,
+    /**
+     * checking for (and performing) a resize of the GUI surface
+     */
+    GUI_SURFACE,
+    /**
+     * dispatching GUI input and updating the GUI (listeners and layout)
+     */
+    GUI_UPDATE,
+    /**
+     * issuing the Skija draw of the GUI (CPU time)
+     */
+    GUI_DRAW,
+    /**
+     * issuing the MSAA resolve of the GUI (CPU time)
+     */
+    GUI_BLIT,
+    /**
+     * blending the GUI texture over the 3-D scene
+     */
+    BLEND,
+    /**
+     * executing the Skija draw of the GUI (GPU time, from timer queries)
+     */
+    GPU_GUI_DRAW,
+    /**
+     * executing the MSAA resolve of the GUI (GPU time, from timer queries)
+     */
+    GPU_GUI_BLIT
+}
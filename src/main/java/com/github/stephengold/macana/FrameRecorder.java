@@ -0,0 +1,344 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Record frames and input events to a memory-mapped file, for reproducing
+ * performance problems using HeadlessRunner. Records have a fixed size and
+ * are written into a ring, so the file retains only the most recent records
+ * and never grows. Writing a record is a handful of stores into mapped
+ * memory, cheap enough to leave enabled.
+ * <p>
+ * Like GuiInputQueue, the recorder merges consecutive cursor motions into one
+ * record at the latest position, and consecutive scroll events into one
+ * record with the summed deltas. A merged record is written when another kind
+ * of record arrives, so high-rate mice and trackpads add at most a few
+ * records per frame.
+ * <p>
+ * File layout (little-endian): a 32-byte header (magic, version, record
+ * size, capacity, then the total number of records written), followed by
+ * {@code capacity} 32-byte records. Each record holds an int type (with the
+ * pressed flag in bit 8), an int frame number, and 3 doubles whose meaning
+ * depends on the type.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+final class FrameRecorder {
+    // *************************************************************************
+    // constants
+
+    /**
+     * record types
+     */
+    final static int frameRecord = 1;
+    final static int charRecord = 2;
+    final static int keyRecord = 3;
+    final static int buttonRecord = 4;
+    final static int moveRecord = 5;
+    final static int scrollRecord = 6;
+    /**
+     * flag set in the type of a press event
+     */
+    final static int pressedFlag = 0x100;
+    /**
+     * identifies a recording file ("MCNR")
+     */
+    final static int magic = 0x4d434e52;
+    /**
+     * file-format version
+     */
+    final static int version = 1;
+    /**
+     * number of bytes per record, and in the header
+     */
+    final static int recordBytes = 32;
+    /**
+     * offset of the total number of records written
+     */
+    final private static int writeCountOffset = 16;
+    // *************************************************************************
+    // fields
+
+    /**
+     * true if a merged cursor motion is waiting to be written
+     */
+    private boolean hasPendingMove;
+    /**
+     * true if merged scrolling is waiting to be written
+     */
+    private boolean hasPendingScroll;
+    /**
+     * latest cursor position of the pending motion (in GUI pixels)
+     */
+    private double pendingX;
+    private double pendingY;
+    /**
+     * summed deltas of the pending scrolling
+     */
+    private double pendingXScroll;
+    private double pendingYScroll;
+    /**
+     * open channel to the file
+     */
+    final private FileChannel channel;
+    /**
+     * number of records the ring can hold
+     */
+    final private int capacity;
+    /**
+     * total number of records written
+     */
+    private long writeCount;
+    /**
+     * number of the frame in progress
+     */
+    private long frame;
+    /**
+     * mapped contents of the file
+     */
+    final private MappedByteBuffer map;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Create (or truncate) a recording file with the specified capacity.
+     *
+     * @param path the path of the file (not null)
+     * @param capacity the number of records to retain (&gt;0)
+     * @throws IOException if the file can't be created or mapped
+     */
+    FrameRecorder(Path path, int capacity) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity = " + capacity);
+        }
+
+        this.capacity = capacity;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        long size = (capacity + 1L) * recordBytes;
+        this.map = channel.map(FileChannel.MapMode.READ_WRITE, 0L, size);
+        map.order(ByteOrder.LITTLE_ENDIAN);
+
+        map.putInt(0, magic);
+        map.putInt(4, version);
+        map.putInt(8, recordBytes);
+        map.putInt(12, capacity);
+        map.putLong(writeCountOffset, 0L);
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Visit each record read from a file.
+     */
+    interface RecordVisitor {
+        /**
+         * Process a record.
+         *
+         * @param type the record type, including any pressed flag
+         * @param frame the frame number (low 32 bits)
+         * @param a the first value
+         * @param b the second value
+         * @param c the third value
+         */
+        void visit(int type, int frame, double a, double b, double c);
+    }
+
+    /**
+     * Flush the mapped records to the file and close it.
+     *
+     * @throws IOException if the file can't be closed
+     */
+    void close() throws IOException {
+        writePending();
+        map.force();
+        channel.close();
+    }
+
+    /**
+     * Read every retained record from the specified file, oldest first.
+     *
+     * @param path the path of the file (not null)
+     * @param visitor the visitor to invoke (not null)
+     * @return true if the ring wrapped, so older records were overwritten
+     * and the first retained record is from the middle of the session,
+     * otherwise false
+     * @throws IOException if the file can't be read or isn't a recording
+     */
+    static boolean read(Path path, RecordVisitor visitor) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer
+                    = in.map(FileChannel.MapMode.READ_ONLY, 0L, in.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != magic || buffer.getInt(4) != version
+                    || buffer.getInt(8) != recordBytes) {
+                throw new IOException("Not a Macana recording: " + path);
+            }
+
+            int ringSize = buffer.getInt(12);
+            long written = buffer.getLong(writeCountOffset);
+            long first = Math.max(0L, written - ringSize);
+            for (long index = first; index < written; ++index) {
+                int offset = (int) ((index % ringSize + 1) * recordBytes);
+                visitor.visit(buffer.getInt(offset), buffer.getInt(offset + 4),
+                        buffer.getDouble(offset + 8),
+                        buffer.getDouble(offset + 16),
+                        buffer.getDouble(offset + 24));
+            }
+
+            boolean result = (first > 0L);
+            return result;
+        }
+    }
+
+    /**
+     * Record a character event.
+     *
+     * @param codePoint the Unicode code point
+     */
+    void recordCharacter(int codePoint) {
+        writePending();
+        write(charRecord, codePoint, 0., 0.);
+    }
+
+    /**
+     * Record the start of a frame. Input events recorded afterward belong to
+     * the next frame.
+     *
+     * @param clock the frame clock, already advanced (not null, unaffected)
+     */
+    void recordFrame(FrameClock clock) {
+        writePending(); // Pending input belongs to the previous frame.
+        this.frame = clock.frameCount();
+        write(frameRecord, clock.frameSeconds(), clock.timestep(),
+                clock.maxSubsteps());
+    }
+
+    /**
+     * Record a keyboard event.
+     *
+     * @param glfwKey the GLFW key code
+     * @param isPressed true for a press, false for a release
+     */
+    void recordKey(int glfwKey, boolean isPressed) {
+        writePending();
+        write(keyRecord | (isPressed ? pressedFlag : 0), glfwKey, 0., 0.);
+    }
+
+    /**
+     * Record a mouse-button event.
+     *
+     * @param glfwButton the GLFW button code
+     * @param isPressed true for a press, false for a release
+     * @param x the X coordinate of the cursor (in GUI pixels)
+     * @param y the Y coordinate of the cursor (in GUI pixels)
+     */
+    void recordMouseButton(
+            int glfwButton, boolean isPressed, double x, double y) {
+        writePending();
+        write(buttonRecord | (isPressed ? pressedFlag : 0), glfwButton, x, y);
+    }
+
+    /**
+     * Record a cursor motion, merging with any pending motion.
+     *
+     * @param x the new X coordinate of the cursor (in GUI pixels)
+     * @param y the new Y coordinate of the cursor (in GUI pixels)
+     */
+    void recordMouseMove(double x, double y) {
+        if (hasPendingScroll) {
+            writePending();
+        }
+        this.pendingX = x;
+        this.pendingY = y;
+        this.hasPendingMove = true;
+    }
+
+    /**
+     * Record a scroll event, merging with any pending scrolling.
+     *
+     * @param xScroll the horizontal scroll offset
+     * @param yScroll the vertical scroll offset
+     */
+    void recordScroll(double xScroll, double yScroll) {
+        if (hasPendingMove) {
+            writePending();
+        }
+        this.pendingXScroll += xScroll;
+        this.pendingYScroll += yScroll;
+        this.hasPendingScroll = true;
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Append a record, overwriting the oldest one if the ring is full.
+     *
+     * @param type the record type, including any pressed flag
+     * @param a the first value
+     * @param b the second value
+     * @param c the third value
+     */
+    private void write(int type, double a, double b, double c) {
+        int offset = (int) ((writeCount % capacity + 1) * recordBytes);
+        map.putInt(offset, type);
+        map.putInt(offset + 4, (int) frame);
+        map.putDouble(offset + 8, a);
+        map.putDouble(offset + 16, b);
+        map.putDouble(offset + 24, c);
+
+        ++writeCount;
+        // Publish the count last, so a crash leaves complete records.
+        map.putLong(writeCountOffset, writeCount);
+    }
+
+    /**
+     * Write any merged motion and scrolling.
+     */
+    private void writePending() {
+        if (hasPendingMove) {
+            write(moveRecord, pendingX, pendingY, 0.);
+            this.hasPendingMove = false;
+        }
+        if (hasPendingScroll) {
+            write(scrollRecord, pendingXScroll, pendingYScroll, 0.);
+            this.pendingXScroll = 0.;
+            this.pendingYScroll = 0.;
+            this.hasPendingScroll = false;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+import java.util.Locale;
+
+/**
+ * Per-phase frame timings for a MacanaApp, accumulated in fixed-size
+ * histograms. Recording is allocation-free. Not thread-safe: samples should
+ * be recorded and read on the render thread.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+final class FrameStats {
+    // *************************************************************************
+    // constants
+
+    /**
+     * enumerate the phases only once
+     */
+    final private static FramePhase[] phases = FramePhase.values();
+    // *************************************************************************
+    // fields
+
+    /**
+     * one histogram per phase, indexed by ordinal
+     */
+    final private Histogram[] histograms = new Histogram[phases.length];
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate a collection of empty histograms.
+     */
+    FrameStats() {
+        for (int i = 0; i < phases.length; ++i) {
+            histograms[i] = new Histogram();
+        }
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Append a one-line summary of each phase with samples to the specified
+     * StringBuilder, for display in an overlay or log.
+     *
+     * @param builder the StringBuilder to append to (not null, modified)
+     */
+    void appendSummary(StringBuilder builder) {
+        for (FramePhase phase : phases) {
+            Histogram histogram = histograms[phase.ordinal()];
+            if (histogram.count() == 0L) {
+                continue;
+            }
+
+            double p50 = 1e-6 * histogram.percentile(0.5);
+            double p99 = 1e-6 * histogram.percentile(0.99);
+            double max = 1e-6 * histogram.max();
+            builder.append(String.format(Locale.ROOT,
+                    "%-12s p50=%6.2f p99=%6.2f max=%6.2f ms%n",
+                    phase, p50, p99, max));
+        }
+    }
+
+    /**
+     * Access the histogram of the specified phase.
+     *
+     * @param phase the phase to access (not null)
+     * @return the pre-existing instance (not null)
+     */
+    Histogram histogram(FramePhase phase) {
+        Histogram result = histograms[phase.ordinal()];
+        return result;
+    }
+
+    /**
+     * Record a duration for the specified phase.
+     *
+     * @param phase the phase that was timed (not null)
+     * @param nanoseconds the duration (in nanoseconds, &ge;0)
+     */
+    void record(FramePhase phase, long nanoseconds) {
+        histograms[phase.ordinal()].record(nanoseconds);
+    }
+
+    /**
+     * Discard all samples.
+     */
+    void reset() {
+        for (Histogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+}
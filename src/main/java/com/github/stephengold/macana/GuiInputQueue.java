@@ -0,0 +1,545 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+import java.util.Arrays;
+import java.util.function.DoubleSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import myworld.obsidian.ObsidianUI;
+import myworld.obsidian.input.Key;
+import myworld.obsidian.input.MouseButton;
+import myworld.obsidian.input.MouseWheelAxis;
+
+/**
+ * A bounded, allocation-free queue of GUI input events, with a single
+ * producer (the thread that polls GLFW) and a single consumer (the thread
+ * that updates the GUI).
+ * <p>
+ * Consecutive mouse-motion events are merged into a single event at the
+ * latest cursor position, and consecutive scroll events are merged by summing
+ * their deltas on each axis. Merged events are held by the producer until
+ * another kind of event arrives or {@link #flush()} is invoked.
+ * <p>
+ * Characters, keys, and mouse buttons are never dropped. If the ring is full,
+ * they wait in a backlog owned by the producer (which grows as needed and
+ * allocates only then) and are published in order as the consumer frees
+ * slots. Merged scrolling stays pending until there's room. Only merged
+ * mouse motion is dropped, since later events carry the cursor position.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+final class GuiInputQueue {
+    // *************************************************************************
+    // constants
+
+    /**
+     * event type for a typed character
+     */
+    final private static int characterType = 0;
+    /**
+     * event type for a keyboard key
+     */
+    final private static int keyType = 1;
+    /**
+     * event type for a mouse button
+     */
+    final private static int mouseButtonType = 2;
+    /**
+     * event type for mouse motion
+     */
+    final private static int mouseMoveType = 3;
+    /**
+     * event type for a mouse wheel
+     */
+    final private static int mouseWheelType = 4;
+    /**
+     * message logger for this class
+     */
+    final private static Logger logger
+            = Logger.getLogger(GuiInputQueue.class.getName());
+    // *************************************************************************
+    // fields
+
+    /**
+     * pressed/released flag stored in each slot
+     */
+    final private boolean[] pressed;
+    /**
+     * pressed/released flag of each backlogged event (used only by the
+     * producer)
+     */
+    private boolean[] backlogPressed = new boolean[0];
+    /**
+     * true if merged mouse motion is waiting to be published
+     */
+    private boolean hasPendingMove;
+    /**
+     * true if merged scrolling is waiting to be published
+     */
+    private boolean hasPendingScroll;
+    /**
+     * supply the cursor position when merged events are published
+     */
+    final private DoubleSupplier cursorX;
+    final private DoubleSupplier cursorY;
+    /**
+     * pending horizontal scroll delta
+     */
+    private double pendingXScroll;
+    /**
+     * pending vertical scroll delta
+     */
+    private double pendingYScroll;
+    /**
+     * list to receive vertical scrolling, or null if none
+     */
+    private volatile VirtualList scrollTarget;
+    /**
+     * scroll amount stored in each slot
+     */
+    final private float[] amounts;
+    /**
+     * key code, button code, code point, or wheel axis stored in each slot
+     */
+    final private int[] codes;
+    /**
+     * GLFW modifier bitmask stored in each slot
+     */
+    final private int[] modifiers;
+    /**
+     * modifier keys currently held, one bit per key (used only by the
+     * producer)
+     */
+    private int heldModifierKeys;
+    /**
+     * GLFW modifier bitmask of the event most recently dispatched (written
+     * only by the consumer)
+     */
+    private int dispatchedModifiers;
+    /**
+     * event type stored in each slot
+     */
+    final private int[] types;
+    /**
+     * code, GLFW modifier bitmask, type, and cursor position of each
+     * backlogged event (used only by the producer)
+     */
+    private int[] backlogCodes = new int[0];
+    private int[] backlogModifiers = new int[0];
+    private int[] backlogTypes = new int[0];
+    private int[] backlogXs = new int[0];
+    private int[] backlogYs = new int[0];
+    /**
+     * index of the oldest backlogged event
+     */
+    private int backlogFirst;
+    /**
+     * number of backlogged events
+     */
+    private int backlogCount;
+    /**
+     * cursor position stored in each slot
+     */
+    final private int[] xs;
+    final private int[] ys;
+    /**
+     * capacity minus one (capacity is a power of 2)
+     */
+    final private int mask;
+    /**
+     * number of merged mouse motions dropped because the ring was full
+     */
+    private long droppedMoves;
+    /**
+     * total number of events consumed (written only by the consumer)
+     */
+    private volatile long head;
+    /**
+     * total number of events published (written only by the producer)
+     */
+    private volatile long tail;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate an empty queue.
+     *
+     * @param capacity the maximum number of published events (&ge;1, rounded
+     * up to a power of 2)
+     * @param cursorX supplier for the X coordinate of the cursor (not null)
+     * @param cursorY supplier for the Y coordinate of the cursor (not null)
+     */
+    GuiInputQueue(
+            int capacity, DoubleSupplier cursorX, DoubleSupplier cursorY) {
+        assert capacity >= 1 : capacity;
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.amounts = new float[size];
+        this.codes = new int[size];
+        this.modifiers = new int[size];
+        this.pressed = new boolean[size];
+        this.types = new int[size];
+        this.xs = new int[size];
+        this.ys = new int[size];
+
+        this.cursorX = cursorX;
+        this.cursorY = cursorY;
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Enqueue a typed character. Invoked by the producer.
+     *
+     * @param codePoint the Unicode code point of the character
+     */
+    void addCharacter(int codePoint) {
+        flush();
+        publish(characterType, codePoint, false, 0, 0);
+    }
+
+    /**
+     * Enqueue a keyboard event. Invoked by the producer.
+     *
+     * @param glfwKey the GLFW key code
+     * @param isPressed true for a press, false for a release
+     */
+    void addKey(int glfwKey, boolean isPressed) {
+        int bit = Convert.modifierKeyBit(glfwKey);
+        if (isPressed) {
+            this.heldModifierKeys |= bit;
+        } else {
+            this.heldModifierKeys &= ~bit;
+        }
+
+        flush();
+        publish(keyType, glfwKey, isPressed, 0, 0);
+    }
+
+    /**
+     * Enqueue a mouse-button event at the current cursor position. Invoked by
+     * the producer.
+     *
+     * @param glfwButton the GLFW mouse-button code
+     * @param isPressed true for a press, false for a release
+     */
+    void addMouseButton(int glfwButton, boolean isPressed) {
+        flush();
+        int x = (int) cursorX.getAsDouble();
+        int y = (int) cursorY.getAsDouble();
+        publish(mouseButtonType, glfwButton, isPressed, x, y);
+    }
+
+    /**
+     * Note that the mouse has moved, merging with any pending motion. Invoked
+     * by the producer.
+     */
+    void addMouseMove() {
+        if (hasPendingScroll) {
+            flush();
+        }
+        this.hasPendingMove = true;
+    }
+
+    /**
+     * Enqueue scroll-wheel motion, merging with any pending scrolling. Invoked
+     * by the producer.
+     *
+     * @param xScroll the horizontal delta
+     * @param yScroll the vertical delta
+     */
+    void addScroll(double xScroll, double yScroll) {
+        if (hasPendingMove) {
+            flush();
+        }
+        this.pendingXScroll += xScroll;
+        this.pendingYScroll += yScroll;
+        this.hasPendingScroll = true;
+    }
+
+    /**
+     * Dispatch all published events to the specified GUI. Each character is
+     * dispatched as its own event, using the shared arrays from
+     * {@link Convert#codePointToChars(int)}, so that no buffer is copied for
+     * the GUI to retain. Invoked by the consumer.
+     *
+     * @param gui the GUI to receive the events (not null)
+     * @return the number of events dispatched (&ge;0)
+     */
+    int drain(ObsidianUI gui) {
+        long first = head;
+        long last = tail;
+        for (long i = first; i < last; ++i) {
+            int slot = (int) i & mask;
+            dispatch(gui, slot);
+        }
+        this.head = last;
+
+        int result = (int) (last - first);
+        return result;
+    }
+
+    /**
+     * Return the modifiers in effect for the event most recently dispatched,
+     * so listeners invoked during dispatch see the state as of their event.
+     * Invoked by the consumer.
+     *
+     * @return a combination of GLFW_MOD_SHIFT, GLFW_MOD_CONTROL,
+     * GLFW_MOD_ALT, and GLFW_MOD_SUPER
+     */
+    int modifiers() {
+        return dispatchedModifiers;
+    }
+
+    /**
+     * Publish any backlogged events, then any merged motion and scrolling.
+     * Invoked by the producer, at least once per frame.
+     */
+    void flush() {
+        publishBacklog();
+        if (!hasPendingMove && !hasPendingScroll) {
+            return;
+        }
+
+        boolean canPublish = (backlogCount == 0);
+        int x = (int) cursorX.getAsDouble();
+        int y = (int) cursorY.getAsDouble();
+        int mods = Convert.convertModifierKeys(heldModifierKeys);
+        if (hasPendingMove) {
+            if (!canPublish
+                    || !tryPublish(mouseMoveType, 0, false, mods, x, y, 0f)) {
+                ++droppedMoves;
+                if (droppedMoves == 1L) {
+                    logger.log(Level.WARNING,
+                            "GUI input queue full, dropping mouse motion");
+                }
+            }
+            this.hasPendingMove = false;
+        }
+
+        // Scrolling that doesn't fit stays pending, to merge with later deltas.
+        if (hasPendingScroll && canPublish) {
+            if (pendingXScroll != 0. && tryPublish(mouseWheelType, 0, false,
+                    mods, x, y, (float) pendingXScroll)) {
+                this.pendingXScroll = 0.;
+            }
+            if (pendingYScroll != 0. && tryPublish(mouseWheelType, 1, false,
+                    mods, x, y, (float) pendingYScroll)) {
+                this.pendingYScroll = 0.;
+            }
+            this.hasPendingScroll
+                    = (pendingXScroll != 0. || pendingYScroll != 0.);
+        }
+    }
+
+    /**
+     * Designate a list to receive vertical scrolling when it's dispatched
+     * with the cursor over the list, in addition to the GUI.
+     *
+     * @param list the desired list, or null for none (alias created)
+     */
+    void setScrollTarget(VirtualList list) {
+        this.scrollTarget = list;
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Dispatch the event in the specified slot. Every event except mouse
+     * motion invalidates the GUI, since listeners may react to it. Motion
+     * changes the GUI's appearance only through hover state, which is
+     * reported by listeners (see {@code MacanaApp.invalidateGuiOnChange()}).
+     *
+     * @param gui the GUI to receive the event (not null)
+     * @param slot the index of the slot
+     */
+    private void dispatch(ObsidianUI gui, int slot) {
+        this.dispatchedModifiers = modifiers[slot];
+        int code = codes[slot];
+        switch (types[slot]) {
+            case characterType -> {
+                char[] characters = Convert.codePointToChars(code);
+                gui.getInput().fireCharacterEvent(characters);
+            }
+            case keyType -> {
+                Key key = Convert.convertGlfwKey(code);
+                gui.getInput().fireKeyEvent(key, pressed[slot]);
+            }
+            case mouseButtonType -> {
+                MouseButton button = Convert.convertGlfwMouseButton(code);
+                gui.getInput().fireMouseButtonEvent(
+                        button, pressed[slot], xs[slot], ys[slot]);
+            }
+            case mouseMoveType -> {
+                gui.getInput().fireMouseMoveEvent(xs[slot], ys[slot]);
+                return;
+            }
+            case mouseWheelType -> {
+                MouseWheelAxis axis = (code == 0)
+                        ? MouseWheelAxis.HORIZONTAL : MouseWheelAxis.VERTICAL;
+                gui.getInput().fireMouseWheelEvent(
+                        axis, xs[slot], ys[slot], amounts[slot]);
+                VirtualList list = scrollTarget;
+                if (list != null && axis == MouseWheelAxis.VERTICAL
+                        && list.isUnderCursor()) {
+                    list.scroll(amounts[slot]);
+                }
+            }
+            default ->
+                throw new IllegalStateException("type = " + types[slot]);
+        }
+        MacanaApp.invalidateGui();
+    }
+
+    /**
+     * Append a character, key, or mouse-button event to the ring. If the ring
+     * is full or events are already backlogged, append it to the backlog
+     * instead.
+     *
+     * @param type the event type
+     * @param code the key code, button code, or code point
+     * @param isPressed the pressed/released flag
+     * @param x the X coordinate of the cursor
+     * @param y the Y coordinate of the cursor
+     */
+    private void publish(int type, int code, boolean isPressed, int x, int y) {
+        int mods = Convert.convertModifierKeys(heldModifierKeys);
+        publishBacklog();
+        if (backlogCount == 0
+                && tryPublish(type, code, isPressed, mods, x, y, 0f)) {
+            return;
+        }
+
+        if (backlogFirst + backlogCount == backlogTypes.length) {
+            growBacklog();
+        }
+        int index = backlogFirst + backlogCount;
+        this.backlogTypes[index] = type;
+        this.backlogCodes[index] = code;
+        this.backlogModifiers[index] = mods;
+        this.backlogPressed[index] = isPressed;
+        this.backlogXs[index] = x;
+        this.backlogYs[index] = y;
+        ++backlogCount;
+    }
+
+    /**
+     * Move as many backlogged events as will fit into the ring, oldest first.
+     */
+    private void publishBacklog() {
+        while (backlogCount > 0) {
+            int index = backlogFirst;
+            boolean success = tryPublish(backlogTypes[index],
+                    backlogCodes[index], backlogPressed[index],
+                    backlogModifiers[index], backlogXs[index],
+                    backlogYs[index], 0f);
+            if (!success) {
+                return;
+            }
+            ++backlogFirst;
+            --backlogCount;
+        }
+        this.backlogFirst = 0;
+    }
+
+    /**
+     * Make room for one more backlogged event at the end of the backlog,
+     * either by moving the backlog to the start of its arrays or by enlarging
+     * them.
+     */
+    private void growBacklog() {
+        int length = backlogTypes.length;
+        if (backlogFirst > length / 2) {
+            System.arraycopy(backlogTypes, backlogFirst, backlogTypes, 0,
+                    backlogCount);
+            System.arraycopy(backlogCodes, backlogFirst, backlogCodes, 0,
+                    backlogCount);
+            System.arraycopy(backlogModifiers, backlogFirst, backlogModifiers,
+                    0, backlogCount);
+            System.arraycopy(backlogPressed, backlogFirst, backlogPressed, 0,
+                    backlogCount);
+            System.arraycopy(backlogXs, backlogFirst, backlogXs, 0,
+                    backlogCount);
+            System.arraycopy(backlogYs, backlogFirst, backlogYs, 0,
+                    backlogCount);
+            this.backlogFirst = 0;
+            return;
+        }
+
+        if (length == 0) {
+            logger.log(Level.WARNING,
+                    "GUI input queue full, backlogging input events");
+        }
+        int newLength = Math.max(16, 2 * length);
+        this.backlogTypes = Arrays.copyOf(backlogTypes, newLength);
+        this.backlogCodes = Arrays.copyOf(backlogCodes, newLength);
+        this.backlogModifiers = Arrays.copyOf(backlogModifiers, newLength);
+        this.backlogPressed = Arrays.copyOf(backlogPressed, newLength);
+        this.backlogXs = Arrays.copyOf(backlogXs, newLength);
+        this.backlogYs = Arrays.copyOf(backlogYs, newLength);
+    }
+
+    /**
+     * Append an event to the ring, unless the ring is full.
+     *
+     * @param type the event type
+     * @param code the key code, button code, code point, or wheel axis
+     * @param isPressed the pressed/released flag
+     * @param mods the GLFW modifier bitmask in effect
+     * @param x the X coordinate of the cursor
+     * @param y the Y coordinate of the cursor
+     * @param amount the scroll amount
+     * @return true if appended, false if the ring is full
+     */
+    private boolean tryPublish(int type, int code, boolean isPressed,
+            int mods, int x, int y, float amount) {
+        long index = tail;
+        if (index - head > mask) {
+            return false;
+        }
+
+        int slot = (int) index & mask;
+        this.types[slot] = type;
+        this.codes[slot] = code;
+        this.modifiers[slot] = mods;
+        this.pressed[slot] = isPressed;
+        this.xs[slot] = x;
+        this.ys[slot] = y;
+        this.amounts[slot] = amount;
+
+        this.tail = index + 1; // publishes the slot to the consumer
+
+        return true;
+    }
+}
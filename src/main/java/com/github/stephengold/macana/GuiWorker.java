@@ -0,0 +1,242 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+import java.util.Queue;
+import java.util.concurrent.Semaphore;
+import myworld.obsidian.ObsidianUI;
+
+/**
+ * A dedicated thread that updates an Obsidian GUI (input dispatch, listeners,
+ * and layout) concurrently with the render thread. The render thread may draw
+ * the GUI only while the worker is idle.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+final class GuiWorker implements Runnable {
+    // *************************************************************************
+    // fields
+
+    /**
+     * true once the worker has been asked to terminate
+     */
+    private volatile boolean isStopping;
+    /**
+     * seconds to pass to the next update (written by the render thread before
+     * releasing {@code startSignal})
+     */
+    private float updateSeconds;
+    /**
+     * duration of the most recent update not yet collected by the render
+     * thread (in nanoseconds), or -1 if none (written by the worker before
+     * releasing {@code idleSignal})
+     */
+    private long updateNanos = -1L;
+    /**
+     * whatever the most recent update threw, or null if it completed normally
+     * (written by the worker before releasing {@code idleSignal})
+     */
+    private Throwable failure;
+    /**
+     * GUI to be updated
+     */
+    final private ObsidianUI gui;
+    /**
+     * input events to dispatch before each update
+     */
+    final private GuiInputQueue input;
+    /**
+     * tasks to be executed before each update
+     */
+    final private Queue<Runnable> tasks;
+    /**
+     * permit available while the worker is idle
+     */
+    final private Semaphore idleSignal = new Semaphore(1);
+    /**
+     * permit released to start an update
+     */
+    final private Semaphore startSignal = new Semaphore(0);
+    /**
+     * the worker thread
+     */
+    final private Thread thread;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate a worker for the specified GUI. The worker isn't started.
+     *
+     * @param gui the GUI to update (not null, alias created)
+     * @param input the queue of input events to dispatch before each update
+     * (not null, alias created)
+     * @param tasks the queue of tasks to execute before each update (not null,
+     * alias created)
+     */
+    GuiWorker(ObsidianUI gui, GuiInputQueue input, Queue<Runnable> tasks) {
+        this.gui = gui;
+        this.input = input;
+        this.tasks = tasks;
+
+        this.thread = new Thread(this, "Obsidian GUI");
+        thread.setDaemon(true);
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Execute and remove all queued tasks. Invoked on whichever thread updates
+     * the GUI.
+     *
+     * @param tasks the queue of tasks (not null)
+     * @return the number of tasks executed (&ge;0)
+     */
+    static int runTasks(Queue<Runnable> tasks) {
+        int result = 0;
+        for (Runnable task = tasks.poll(); task != null; task = tasks.poll()) {
+            task.run();
+            ++result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Release a GUI reserved by {@link #tryBeginDraw()} without starting an
+     * update.
+     */
+    void endDraw() {
+        assert idleSignal.availablePermits() == 0;
+        idleSignal.release();
+    }
+
+    /**
+     * Start an update of the GUI on the worker thread. Invoked on the render
+     * thread after a successful {@link #tryBeginDraw()}.
+     *
+     * @param seconds the elapsed time since the previous update (in seconds,
+     * &ge;0)
+     */
+    void requestUpdate(float seconds) {
+        assert idleSignal.availablePermits() == 0;
+
+        this.updateSeconds = seconds;
+        startSignal.release();
+    }
+
+    /**
+     * Collect the duration of the most recent update. Invoked on the render
+     * thread after a successful {@link #tryBeginDraw()}.
+     *
+     * @return the duration (in nanoseconds) or -1 if it's already been
+     * collected
+     * @throws IllegalStateException if the update threw an exception or
+     * error, which is attached as the cause (the GUI is then released)
+     */
+    long takeUpdateNanos() {
+        assert idleSignal.availablePermits() == 0;
+
+        Throwable cause = failure;
+        if (cause != null) {
+            this.failure = null;
+            idleSignal.release();
+            throw new IllegalStateException("A GUI update failed.", cause);
+        }
+
+        long result = updateNanos;
+        this.updateNanos = -1L;
+
+        return result;
+    }
+
+    /**
+     * Start the worker thread.
+     */
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Terminate the worker thread, waiting for any update in progress.
+     */
+    void stop() {
+        this.isStopping = true;
+        startSignal.release();
+        try {
+            thread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * If the worker is idle, reserve the GUI for drawing by the render thread.
+     * Does not block. If successful, the caller must follow up with
+     * {@link #requestUpdate(float)} or {@link #endDraw()}.
+     *
+     * @return true if the GUI is reserved, false if an update is in progress
+     */
+    boolean tryBeginDraw() {
+        boolean result = idleSignal.tryAcquire();
+        return result;
+    }
+    // *************************************************************************
+    // Runnable methods
+
+    /**
+     * Body of the worker thread: wait for a request, then dispatch queued
+     * input events, run queued tasks, and update the GUI. An update that
+     * throws is reported to the render thread by {@link #takeUpdateNanos()},
+     * and the worker keeps serving requests.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            startSignal.acquireUninterruptibly();
+            if (isStopping) {
+                break;
+            }
+
+            long startNanos = System.nanoTime();
+            try {
+                input.drain(gui);
+                int numTasks = runTasks(tasks);
+                if (numTasks > 0) {
+                    MacanaApp.invalidateGui();
+                }
+                gui.update(updateSeconds);
+            } catch (Throwable throwable) {
+                this.failure = throwable;
+            } finally {
+                this.updateNanos = System.nanoTime() - startNanos;
+                idleSignal.release();
+            }
+        }
+    }
+}
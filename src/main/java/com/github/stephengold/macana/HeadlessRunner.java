@@ -0,0 +1,664 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+import com.github.stephengold.sport.input.InputProcessor;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import org.lwjgl.glfw.GLFW;
+
+/**
+ * Run a MacanaApp for a fixed number of frames with a hidden window and a
+ * fixed timestep, optionally replaying scripted input, then report frame
+ * timings as JSON. The window is hidden but still requires a display (on a
+ * machine without one, run under {@code xvfb-run}), because SPORT creates an
+ * OpenGL context through GLFW.
+ * <p>
+ * Usage: {@code HeadlessRunner <appClass> [--frames=N] [--warmup=N]
+ * [--timestep=SECONDS] [--script=PATH] [--replay=PATH] [--out=PATH]}
+ * <p>
+ * {@code --replay} reads a file written by FrameRecorder (see
+ * {@code MacanaApp.startRecording()}) and reproduces its frames: each frame
+ * advances the frame clock by the recorded frame time, using the recorded
+ * physics timestep, and recorded input events are delivered at the start of
+ * the frame that originally processed them. Unless {@code --frames} is
+ * specified, all recorded frames are run. The JSON then reports the recorded
+ * physics timestep and the recorded time of each frame run, instead of
+ * {@code --timestep}. If the recording's ring wrapped, the retained records
+ * begin mid-session while the app still starts from its initial state, so
+ * the replay only approximates the original session. The JSON flags this as
+ * {@code "replayWrapped": true}.
+ * <p>
+ * Each non-blank line of an input script has the form
+ * {@code <frame> <type> <args>}, with frame indices in non-decreasing order.
+ * Lines starting with "#" are ignored. The types are:
+ * <ul>
+ * <li>{@code char <codePoint>}</li>
+ * <li>{@code key <KEY_NAME or code> press|release}</li>
+ * <li>{@code button <MOUSE_BUTTON_NAME or code> press|release}</li>
+ * <li>{@code move <x> <y>} (in GUI pixels, measured from the top left)</li>
+ * <li>{@code scroll <dx> <dy>}</li>
+ * </ul>
+ * Scripted events are delivered through the same InputProcessor as real
+ * ones. Once a script moves the cursor, the real cursor is ignored.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public final class HeadlessRunner {
+    // *************************************************************************
+    // constants
+
+    /**
+     * event types in input scripts
+     */
+    final private static int charEvent = 0;
+    final private static int keyEvent = 1;
+    final private static int buttonEvent = 2;
+    final private static int moveEvent = 3;
+    final private static int scrollEvent = 4;
+    /**
+     * replayed event that positions the cursor without notifying the GUI
+     */
+    final private static int cursorEvent = 5;
+    // *************************************************************************
+    // fields
+
+    /**
+     * true once a scripted event has positioned the cursor
+     */
+    private boolean hasScriptedCursor;
+    /**
+     * scripted cursor position (in GUI pixels)
+     */
+    private double cursorX;
+    private double cursorY;
+    /**
+     * first and second arguments of each scripted event
+     */
+    private double[] eventArg1 = new double[16];
+    private double[] eventArg2 = new double[16];
+    /**
+     * simulated time per frame (in seconds, &gt;0)
+     */
+    final private float timestep;
+    /**
+     * simulated time of each replayed frame (in seconds), or null if not
+     * replaying
+     */
+    private float[] replaySeconds;
+    /**
+     * true if the replayed recording's ring wrapped, so it starts
+     * mid-session
+     */
+    private boolean isReplayWrapped;
+    /**
+     * index of the frame in progress
+     */
+    private int frameIndex;
+    /**
+     * frame index of each scripted event
+     */
+    private int[] eventFrame = new int[16];
+    /**
+     * type of each scripted event
+     */
+    private int[] eventType = new int[16];
+    /**
+     * number of scripted events
+     */
+    private int numEvents;
+    /**
+     * index of the next scripted event to deliver
+     */
+    private int nextEvent;
+    /**
+     * number of frames to run, including warm-up frames
+     */
+    private int numFrames;
+    /**
+     * number of initial frames excluded from the statistics
+     */
+    final private int numWarmupFrames;
+    /**
+     * system time when the statistics were last reset
+     */
+    private long measureStart;
+    /**
+     * system time when the run ended
+     */
+    private long measureEnd;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate a runner with no scripted input.
+     *
+     * @param numFrames the number of frames to run (&gt;0)
+     * @param numWarmupFrames the number of initial frames to exclude from the
+     * statistics (&ge;0, &lt;numFrames)
+     * @param timestep the simulated time per frame (in seconds, &gt;0)
+     */
+    HeadlessRunner(int numFrames, int numWarmupFrames, float timestep) {
+        if (numFrames <= 0) {
+            throw new IllegalArgumentException("numFrames = " + numFrames);
+        }
+        if (numWarmupFrames < 0 || numWarmupFrames >= numFrames) {
+            throw new IllegalArgumentException(
+                    "numWarmupFrames = " + numWarmupFrames);
+        }
+        if (!(timestep > 0f)) {
+            throw new IllegalArgumentException("timestep = " + timestep);
+        }
+
+        this.numFrames = numFrames;
+        this.numWarmupFrames = numWarmupFrames;
+        this.timestep = timestep;
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Main entry point for the HeadlessRunner application.
+     *
+     * @param arguments array of command-line arguments (not null)
+     * @throws IOException if the script can't be read or the report can't be
+     * written
+     * @throws ReflectiveOperationException if the app can't be instantiated
+     */
+    public static void main(String[] arguments)
+            throws IOException, ReflectiveOperationException {
+        if (arguments.length < 1) {
+            System.err.println("Usage: HeadlessRunner <appClass> [--frames=N]"
+                    + " [--warmup=N] [--timestep=SECONDS] [--script=PATH]"
+                    + " [--replay=PATH] [--out=PATH]");
+            System.exit(1);
+        }
+
+        String className = arguments[0];
+        if (!className.contains(".")) {
+            className = HeadlessRunner.class.getPackageName() + "."
+                    + className;
+        }
+        int numFrames = 600;
+        int numWarmupFrames = 60;
+        float timestep = 1f / 60f;
+        boolean hasFrameCount = false;
+        Path scriptPath = null;
+        Path replayPath = null;
+        Path outPath = null;
+        for (int i = 1; i < arguments.length; ++i) {
+            String argument = arguments[i];
+            String value = argument.substring(argument.indexOf('=') + 1);
+            if (argument.startsWith("--frames=")) {
+                numFrames = Integer.parseInt(value);
+                hasFrameCount = true;
+            } else if (argument.startsWith("--warmup=")) {
+                numWarmupFrames = Integer.parseInt(value);
+            } else if (argument.startsWith("--timestep=")) {
+                timestep = Float.parseFloat(value);
+            } else if (argument.startsWith("--script=")) {
+                scriptPath = Path.of(value);
+            } else if (argument.startsWith("--replay=")) {
+                replayPath = Path.of(value);
+            } else if (argument.startsWith("--out=")) {
+                outPath = Path.of(value);
+            } else {
+                throw new IllegalArgumentException("argument = " + argument);
+            }
+        }
+
+        HeadlessRunner runner
+                = new HeadlessRunner(numFrames, numWarmupFrames, timestep);
+        if (scriptPath != null && replayPath != null) {
+            throw new IllegalArgumentException(
+                    "--script and --replay are mutually exclusive");
+        } else if (scriptPath != null) {
+            runner.loadScript(scriptPath);
+        } else if (replayPath != null) {
+            runner.loadReplay(replayPath, hasFrameCount);
+        }
+
+        Class<?> appClass = Class.forName(className);
+        MacanaApp<?> app = (MacanaApp<?>) appClass
+                .asSubclass(MacanaApp.class)
+                .getDeclaredConstructor()
+                .newInstance();
+        MacanaApp.setHeadlessRunner(runner);
+        /*
+         * Ask GLFW to create the window hidden. Hints persist until reset, so
+         * this applies unless SPORT resets them before creating the window.
+         */
+        if (!GLFW.glfwInit()) {
+            throw new IllegalStateException("Failed to initialize GLFW");
+        }
+        GLFW.glfwWindowHint(GLFW.GLFW_VISIBLE, GLFW.GLFW_FALSE);
+        app.start();
+
+        String json = runner.toJson(className);
+        if (outPath == null) {
+            System.out.print(json);
+        } else {
+            try (Writer writer = Files.newBufferedWriter(
+                    outPath, StandardCharsets.UTF_8)) {
+                writer.write(json);
+            }
+        }
+    }
+    // *************************************************************************
+    // new methods exposed to MacanaApp
+
+    /**
+     * Deliver the scripted events for the frame in progress. Invoked by
+     * MacanaApp at the start of each frame.
+     *
+     * @param processor the processor for GUI input (not null)
+     */
+    void beginFrame(InputProcessor processor) {
+        if (frameIndex == 0) {
+            this.measureStart = System.nanoTime();
+        }
+
+        while (nextEvent < numEvents && eventFrame[nextEvent] <= frameIndex) {
+            double arg1 = eventArg1[nextEvent];
+            double arg2 = eventArg2[nextEvent];
+            switch (eventType[nextEvent]) {
+                case charEvent:
+                    processor.onCharacter((int) arg1);
+                    break;
+                case keyEvent:
+                    processor.onKeyboard((int) arg1, arg2 != 0.);
+                    break;
+                case buttonEvent:
+                    processor.onMouseButton((int) arg1, arg2 != 0.);
+                    break;
+                case moveEvent:
+                    this.hasScriptedCursor = true;
+                    this.cursorX = arg1;
+                    this.cursorY = arg2;
+                    processor.onMouseMotion(0., 0.);
+                    break;
+                case scrollEvent:
+                    processor.onScrollMotion(arg1, arg2);
+                    break;
+                case cursorEvent:
+                    this.hasScriptedCursor = true;
+                    this.cursorX = arg1;
+                    this.cursorY = arg2;
+                    break;
+                default:
+                    throw new IllegalStateException(
+                            "type = " + eventType[nextEvent]);
+            }
+            ++nextEvent;
+        }
+    }
+
+    /**
+     * Return the X coordinate of the cursor.
+     *
+     * @param actual the actual X coordinate (in GUI pixels)
+     * @return the scripted coordinate if any, otherwise {@code actual}
+     */
+    double cursorX(double actual) {
+        double result = hasScriptedCursor ? cursorX : actual;
+        return result;
+    }
+
+    /**
+     * Return the Y coordinate of the cursor.
+     *
+     * @param actual the actual Y coordinate (in GUI pixels)
+     * @return the scripted coordinate if any, otherwise {@code actual}
+     */
+    double cursorY(double actual) {
+        double result = hasScriptedCursor ? cursorY : actual;
+        return result;
+    }
+
+    /**
+     * Finish the frame in progress. Invoked by MacanaApp at the end of each
+     * frame.
+     *
+     * @return true if the run is complete, otherwise false
+     */
+    boolean endFrame() {
+        ++frameIndex;
+        if (frameIndex == numWarmupFrames) {
+            MacanaApp.frameStats().reset();
+            this.measureStart = System.nanoTime();
+        }
+
+        boolean result = (frameIndex >= numFrames);
+        if (result) {
+            this.measureEnd = System.nanoTime();
+        }
+
+        return result;
+    }
+
+    /**
+     * Return the simulated time for the frame in progress.
+     *
+     * @return the recorded frame time if replaying, otherwise the fixed
+     * timestep (in seconds, &ge;0)
+     */
+    float frameSeconds() {
+        float result = (replaySeconds == null)
+                ? timestep : replaySeconds[frameIndex];
+        return result;
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Append a scripted event.
+     *
+     * @param frame the index of the frame in which to deliver the event
+     * @param type the type of event
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     */
+    private void addEvent(int frame, int type, double arg1, double arg2) {
+        if (numEvents == eventFrame.length) {
+            int newLength = 2 * numEvents;
+            eventFrame = Arrays.copyOf(eventFrame, newLength);
+            eventType = Arrays.copyOf(eventType, newLength);
+            eventArg1 = Arrays.copyOf(eventArg1, newLength);
+            eventArg2 = Arrays.copyOf(eventArg2, newLength);
+        }
+
+        eventFrame[numEvents] = frame;
+        eventType[numEvents] = type;
+        eventArg1[numEvents] = arg1;
+        eventArg2[numEvents] = arg2;
+        ++numEvents;
+    }
+
+    /**
+     * Append the recorded physics timestep and the recorded time of each
+     * frame that was run, as JSON fields.
+     *
+     * @param builder the builder to append to (not null, modified)
+     */
+    private void appendReplayTimes(StringBuilder builder) {
+        float physicsTimestep = MacanaApp.frameClock().timestep();
+        builder.append("  \"physicsTimestep\": ").append(physicsTimestep)
+                .append(",\n");
+        builder.append("  \"replayWrapped\": ").append(isReplayWrapped)
+                .append(",\n");
+        builder.append("  \"frameSeconds\": [");
+        int numRun = Math.min(frameIndex, replaySeconds.length);
+        for (int i = 0; i < numRun; ++i) {
+            if (i > 0) {
+                builder.append(i % 8 == 0 ? ",\n    " : ", ");
+            }
+            builder.append(replaySeconds[i]);
+        }
+        builder.append("],\n");
+    }
+
+    /**
+     * Load recorded frames and input from the specified file, and configure
+     * the frame clock to match the recording.
+     *
+     * @param path the path to the recording (not null)
+     * @param hasFrameCount true to run no more than the specified number of
+     * frames, false to run all recorded frames
+     * @throws IOException if the file can't be read
+     */
+    private void loadReplay(Path path, boolean hasFrameCount)
+            throws IOException {
+        this.replaySeconds = new float[1024];
+        int[] recordedFrames = {0};
+        FrameClock clock = MacanaApp.frameClock();
+        FrameRecorder.RecordVisitor visitor = (type, frame, a, b, c) -> {
+            int replayFrame = recordedFrames[0];
+            int flag = type & FrameRecorder.pressedFlag;
+            double pressed = (flag == 0) ? 0. : 1.;
+            switch (type & ~FrameRecorder.pressedFlag) {
+                case FrameRecorder.frameRecord:
+                    if (replayFrame == 0) {
+                        clock.setTimestep((float) b);
+                        clock.setMaxSubsteps((int) c);
+                    }
+                    if (replayFrame == replaySeconds.length) {
+                        this.replaySeconds = Arrays.copyOf(
+                                replaySeconds, 2 * replayFrame);
+                    }
+                    replaySeconds[replayFrame] = (float) a;
+                    ++recordedFrames[0];
+                    break;
+                case FrameRecorder.charRecord:
+                    addEvent(replayFrame, charEvent, a, 0.);
+                    break;
+                case FrameRecorder.keyRecord:
+                    addEvent(replayFrame, keyEvent, a, pressed);
+                    break;
+                case FrameRecorder.buttonRecord:
+                    addEvent(replayFrame, cursorEvent, b, c);
+                    addEvent(replayFrame, buttonEvent, a, pressed);
+                    break;
+                case FrameRecorder.moveRecord:
+                    addEvent(replayFrame, moveEvent, a, b);
+                    break;
+                case FrameRecorder.scrollRecord:
+                    addEvent(replayFrame, scrollEvent, a, b);
+                    break;
+                default:
+                    throw new IllegalStateException("type = " + type);
+            }
+        };
+        this.isReplayWrapped = FrameRecorder.read(path, visitor);
+
+        int numRecorded = recordedFrames[0];
+        if (numRecorded == 0) {
+            throw new IOException("No frames recorded in " + path);
+        }
+        this.numFrames = hasFrameCount
+                ? Math.min(numFrames, numRecorded) : numRecorded;
+        if (numWarmupFrames >= numFrames) {
+            throw new IllegalArgumentException("Only " + numFrames
+                    + " frames to replay, numWarmupFrames = "
+                    + numWarmupFrames);
+        }
+    }
+
+    /**
+     * Load scripted input from the specified file.
+     *
+     * @param path the path to the script (not null)
+     * @throws IOException if the file can't be read
+     */
+    private void loadScript(Path path) throws IOException {
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        int previousFrame = 0;
+        for (int lineIndex = 0; lineIndex < lines.size(); ++lineIndex) {
+            String line = lines.get(lineIndex).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            String[] words = line.split("\\s+");
+            String where = path + ":" + (lineIndex + 1);
+            if (words.length < 3) {
+                throw new IllegalArgumentException(
+                        "Too few fields at " + where);
+            }
+            int frame = Integer.parseInt(words[0]);
+            if (frame < previousFrame) {
+                throw new IllegalArgumentException(
+                        "Frame out of order at " + where);
+            }
+            previousFrame = frame;
+
+            switch (words[1]) {
+                case "char":
+                    addEvent(frame, charEvent, parseCode(words[2]), 0.);
+                    break;
+                case "key":
+                    addEvent(frame, keyEvent, parseCode(words[2]),
+                            parsePress(words, where));
+                    break;
+                case "button":
+                    addEvent(frame, buttonEvent, parseCode(words[2]),
+                            parsePress(words, where));
+                    break;
+                case "move":
+                    addEvent(frame, moveEvent, Double.parseDouble(words[2]),
+                            parseSecond(words, where));
+                    break;
+                case "scroll":
+                    addEvent(frame, scrollEvent, Double.parseDouble(words[2]),
+                            parseSecond(words, where));
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                            "Unknown event type at " + where);
+            }
+        }
+    }
+
+    /**
+     * Parse a key code, button code, or code point. Names of GLFW constants
+     * are accepted without their "GLFW_" prefix.
+     *
+     * @param word the text to parse (not null, not empty)
+     * @return the code
+     */
+    private static int parseCode(String word) {
+        if (Character.isDigit(word.charAt(0))) {
+            return Integer.parseInt(word);
+        }
+
+        try {
+            int result = GLFW.class.getField("GLFW_" + word).getInt(null);
+            return result;
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalArgumentException("word = " + word, exception);
+        }
+    }
+
+    /**
+     * Parse the press/release field of a key or button event.
+     *
+     * @param words the fields of the script line (not null)
+     * @param where the location of the line, for error messages
+     * @return 1 for press, 0 for release
+     */
+    private static double parsePress(String[] words, String where) {
+        if (words.length < 4) {
+            throw new IllegalArgumentException("Too few fields at " + where);
+        }
+        switch (words[3]) {
+            case "press":
+                return 1.;
+            case "release":
+                return 0.;
+            default:
+                throw new IllegalArgumentException(
+                        "Expected press or release at " + where);
+        }
+    }
+
+    /**
+     * Parse the 2nd numeric argument of a move or scroll event.
+     *
+     * @param words the fields of the script line (not null)
+     * @param where the location of the line, for error messages
+     * @return the argument value
+     */
+    private static double parseSecond(String[] words, String where) {
+        if (words.length < 4) {
+            throw new IllegalArgumentException("Too few fields at " + where);
+        }
+        double result = Double.parseDouble(words[3]);
+
+        return result;
+    }
+
+    /**
+     * Format the statistics of the measured frames as JSON.
+     *
+     * @param appName the name of the app that was run (not null)
+     * @return a new String
+     */
+    private String toJson(String appName) {
+        StringBuilder builder = new StringBuilder(2048);
+        builder.append("{\n");
+        builder.append("  \"app\": \"").append(appName).append("\",\n");
+        builder.append("  \"frames\": ").append(frameIndex).append(",\n");
+        builder.append("  \"warmupFrames\": ").append(numWarmupFrames)
+                .append(",\n");
+        if (replaySeconds == null) {
+            builder.append("  \"timestep\": ").append(timestep)
+                    .append(",\n");
+        } else {
+            appendReplayTimes(builder);
+        }
+        // If the window was closed early, measure up to now.
+        long endTime = (measureEnd == 0L) ? System.nanoTime() : measureEnd;
+        double wallSeconds = 1e-9 * (endTime - measureStart);
+        builder.append("  \"wallSeconds\": ")
+                .append(String.format(Locale.ROOT, "%.6f", wallSeconds))
+                .append(",\n");
+        builder.append("  \"fontWarmUp\": ")
+                .append(MacanaApp.isFontWarmUp()).append(",\n");
+        builder.append("  \"firstGuiDrawNanos\": ")
+                .append(MacanaApp.firstGuiDrawNanos()).append(",\n");
+        builder.append("  \"phases\": {");
+
+        String separator = "\n";
+        FrameStats frameStats = MacanaApp.frameStats();
+        for (FramePhase phase : FramePhase.values()) {
+            Histogram histogram = frameStats.histogram(phase);
+            if (histogram.count() == 0L) {
+                continue;
+            }
+
+            builder.append(separator);
+            separator = ",\n";
+            builder.append(String.format(Locale.ROOT,
+                    "    \"%s\": {\"count\": %d, \"meanNanos\": %.0f,"
+                    + " \"p50Nanos\": %d, \"p99Nanos\": %d,"
+                    + " \"maxNanos\": %d}",
+                    phase, histogram.count(), histogram.mean(),
+                    histogram.percentile(0.5),
+                    histogram.percentile(0.99), histogram.max()));
+        }
+        builder.append("\n  }\n}\n");
+
+        return builder.toString();
+    }
+}
@@ -37,6 +37,7 @@ import com.jme3.bullet.objects.PhysicsBody;
 import com.jme3.bullet.objects.PhysicsRigidBody;
 import com.jme3.math.Plane;
 import com.jme3.math.Vector3f;
+import example.ExampleComponentSkin;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import myworld.obsidian.display.ColorRGBA;
@@ -111,14 +112,14 @@ public class HelloObsidian extends MacanaApp<PhysicsSpace> {
         gui.getRoot().addChild(layout);
 
         StyleClass style = gui.getStyle("ExampleText");
+        warmUpFont(ExampleComponentSkin.TEXT_FONT_FAMILY, 24f, TextStyle.BOLD);
 
         TextButton restartButton = new TextButton("Restart", style);
         layout.addToColumn(restartButton);
 
         restartButton.addButtonListener(
                 ButtonEvent::isClicked, event -> restartSimulation());
-        restartButton
-                .setFontFamily("Clear Sans")
+        restartButton.setFontFamily(ExampleComponentSkin.TEXT_FONT_FAMILY)
                 .setFontSize(24f)
                 .setFontStyle(TextStyle.BOLD)
                 .setLayoutMargin(new Offsets(Distance.pixels(5f)))
@@ -155,10 +156,9 @@ public class HelloObsidian extends MacanaApp<PhysicsSpace> {
     // private methods
 
     /**
-     * Restart the simulation.
+     * Restart the simulation by restoring the initial state of each body.
      */
     private void restartSimulation() {
-        physicsSpace.destroy();
-        populateSpace();
+        restoreInitialState();
     }
 }
@@ -0,0 +1,209 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+/**
+ * A fixed-size, allocation-free histogram of durations, with logarithmic
+ * buckets (8 per power of 2, so relative error is less than 12.5%).
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+final class Histogram {
+    // *************************************************************************
+    // constants
+
+    /**
+     * number of buckets per power of 2 (must be a power of 2)
+     */
+    final private static int subBuckets = 8;
+    /**
+     * log2 of subBuckets
+     */
+    final private static int subBits = 3;
+    /**
+     * total number of buckets, enough for any non-negative long
+     */
+    final private static int numBuckets = (64 - subBits + 1) * subBuckets;
+    // *************************************************************************
+    // fields
+
+    /**
+     * number of samples in each bucket
+     */
+    final private long[] counts = new long[numBuckets];
+    /**
+     * total number of samples recorded
+     */
+    private long count;
+    /**
+     * largest sample recorded
+     */
+    private long max;
+    /**
+     * sum of all samples recorded
+     */
+    private long sum;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate an empty histogram.
+     */
+    Histogram() {
+        // do nothing
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Return the number of samples recorded.
+     *
+     * @return the count (&ge;0)
+     */
+    long count() {
+        return count;
+    }
+
+    /**
+     * Return the largest sample recorded.
+     *
+     * @return the sample value, or 0 if none recorded
+     */
+    long max() {
+        return max;
+    }
+
+    /**
+     * Return the mean of the samples recorded.
+     *
+     * @return the mean, or 0 if none recorded
+     */
+    double mean() {
+        double result = (count == 0L) ? 0. : sum / (double) count;
+        return result;
+    }
+
+    /**
+     * Estimate the specified percentile of the samples recorded.
+     *
+     * @param fraction the desired percentile divided by 100 (&ge;0, &le;1)
+     * @return an upper bound on the percentile, or 0 if none recorded
+     */
+    long percentile(double fraction) {
+        assert fraction >= 0. && fraction <= 1. : fraction;
+        if (count == 0L) {
+            return 0L;
+        }
+
+        long target = Math.max(1L, (long) Math.ceil(fraction * count));
+        long cumulative = 0L;
+        for (int index = 0; index < numBuckets; ++index) {
+            cumulative += counts[index];
+            if (cumulative >= target) {
+                long result = Math.min(upperBound(index), max);
+                return result;
+            }
+        }
+
+        return max;
+    }
+
+    /**
+     * Record a sample.
+     *
+     * @param value the sample value (&ge;0)
+     */
+    void record(long value) {
+        if (value < 0L) {
+            value = 0L;
+        }
+
+        ++counts[bucketIndex(value)];
+        ++count;
+        sum += value;
+        if (value > max) {
+            this.max = value;
+        }
+    }
+
+    /**
+     * Discard all samples.
+     */
+    void reset() {
+        for (int index = 0; index < numBuckets; ++index) {
+            counts[index] = 0L;
+        }
+        this.count = 0L;
+        this.max = 0L;
+        this.sum = 0L;
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Determine which bucket a sample belongs to.
+     *
+     * @param value the sample value (&ge;0)
+     * @return the bucket index (&ge;0, &lt;numBuckets)
+     */
+    private static int bucketIndex(long value) {
+        if (value < subBuckets) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value); // >= subBits
+        int sub = (int) (value >>> (exponent - subBits)) & (subBuckets - 1);
+        int result = (exponent - subBits + 1) * subBuckets + sub;
+
+        return result;
+    }
+
+    /**
+     * Determine the largest value that belongs to the specified bucket.
+     *
+     * @param index the bucket index (&ge;0, &lt;numBuckets)
+     * @return the upper bound (inclusive)
+     */
+    private static long upperBound(int index) {
+        if (index < subBuckets) {
+            return index;
+        }
+
+        int exponent = index / subBuckets + subBits - 1;
+        long sub = index % subBuckets;
+        int shift = exponent - subBits;
+        long lower = (subBuckets + sub) << shift;
+        long result = lower + (1L << shift) - 1L;
+        if (result < 0L) { // overflow in the topmost bucket
+            result = Long.MAX_VALUE;
+        }
+
+        return result;
+    }
+}
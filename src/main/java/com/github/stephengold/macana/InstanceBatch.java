@@ -0,0 +1,451 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+import com.jme3.bullet.collision.shapes.CollisionShape;
+import com.jme3.bullet.objects.PhysicsRigidBody;
+import com.jme3.bullet.util.DebugShapeFactory;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL33C;
+import org.lwjgl.opengl.GL44C;
+
+/**
+ * The rigid bodies that share a collision shape, drawn using a single
+ * instanced draw call. Per-instance transforms (7 floats: location x, y, z,
+ * then rotation x, y, z, w) are interpolated from a TransformSnapshot and
+ * streamed into a persistently mapped buffer
+ * when the driver supports buffer storage (OpenGL 4.4 or ARB_buffer_storage),
+ * otherwise into an orphaned buffer using glBufferSubData().
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+final class InstanceBatch {
+    // *************************************************************************
+    // constants
+
+    /**
+     * number of bytes per instance
+     */
+    final private static int bytesPerInstance
+            = TransformExporter.stride * Float.BYTES;
+    /**
+     * number of floats per vertex of the mesh (position and normal)
+     */
+    final private static int floatsPerVertex = 6;
+    /**
+     * minimum number of instances to allocate space for
+     */
+    final private static int minCapacity = 64;
+    /**
+     * number of regions in a persistently mapped buffer, so the CPU can write
+     * one region while the GPU reads the others
+     */
+    final private static int numRegions = 3;
+    /**
+     * flags for the persistently mapped buffer
+     */
+    final private static int storageFlags = GL44C.GL_MAP_WRITE_BIT
+            | GL44C.GL_MAP_PERSISTENT_BIT | GL44C.GL_MAP_COHERENT_BIT;
+    /**
+     * how long to wait for the GPU to release a region (in nanoseconds)
+     */
+    final private static long fenceTimeoutNanos = 1_000_000_000L;
+    // *************************************************************************
+    // fields
+
+    /**
+     * true to use a persistently mapped buffer, false to use glBufferSubData()
+     */
+    final private boolean persistent;
+    /**
+     * base color of the instances
+     */
+    final private float blue;
+    final private float green;
+    final private float red;
+    /**
+     * staging buffer for the glBufferSubData() path, or null if persistent
+     */
+    private FloatBuffer staging;
+    /**
+     * mapped view of the persistent instance buffer, or null if none
+     */
+    private FloatBuffer mapped;
+    /**
+     * number of instances each region can hold
+     */
+    private int capacity;
+    /**
+     * OpenGL name of the instance buffer, or 0 if none
+     */
+    private int instanceVbo;
+    /**
+     * OpenGL name of the mesh buffer
+     */
+    final private int meshVbo;
+    /**
+     * index of the batch's first body in the capture order of the snapshot
+     */
+    private int firstIndex;
+    /**
+     * index of the region most recently written
+     */
+    private int region;
+    /**
+     * OpenGL name of the vertex-array object
+     */
+    final private int vao;
+    /**
+     * number of vertices in the mesh
+     */
+    final private int vertexCount;
+    /**
+     * bodies drawn by this batch
+     */
+    final private List<PhysicsRigidBody> bodies = new ArrayList<>();
+    /**
+     * fence after the most recent draw that read each region, or 0 if none
+     */
+    final private long[] fences = new long[numRegions];
+    /**
+     * temporary storage for body rotations
+     */
+    final private Quaternion tmpRotation = new Quaternion();
+    /**
+     * temporary storage for body locations
+     */
+    final private Vector3f tmpLocation = new Vector3f();
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Create a batch for the specified shape. Must be invoked with the
+     * application's OpenGL context current.
+     *
+     * @param shape the shared shape (not null, unaffected)
+     * @param persistent true to use a persistently mapped buffer
+     * @param red the red component of the base color (&ge;0, &le;1)
+     * @param green the green component of the base color (&ge;0, &le;1)
+     * @param blue the blue component of the base color (&ge;0, &le;1)
+     */
+    InstanceBatch(CollisionShape shape, boolean persistent, float red,
+            float green, float blue) {
+        this.persistent = persistent;
+        this.red = red;
+        this.green = green;
+        this.blue = blue;
+
+        FloatBuffer positions = DebugShapeFactory.getDebugTriangles(
+                shape, DebugShapeFactory.lowResolution);
+        this.vertexCount = positions.capacity() / 3;
+        FloatBuffer meshData = interleaveNormals(positions);
+
+        this.vao = GL33C.glGenVertexArrays();
+        GL33C.glBindVertexArray(vao);
+
+        this.meshVbo = GL33C.glGenBuffers();
+        GL33C.glBindBuffer(GL33C.GL_ARRAY_BUFFER, meshVbo);
+        GL33C.glBufferData(
+                GL33C.GL_ARRAY_BUFFER, meshData, GL33C.GL_STATIC_DRAW);
+        int stride = floatsPerVertex * Float.BYTES;
+        GL33C.glEnableVertexAttribArray(0);
+        GL33C.glVertexAttribPointer(0, 3, GL33C.GL_FLOAT, false, stride, 0L);
+        GL33C.glEnableVertexAttribArray(1);
+        GL33C.glVertexAttribPointer(1, 3, GL33C.GL_FLOAT, false, stride,
+                3L * Float.BYTES);
+
+        GL33C.glEnableVertexAttribArray(2);
+        GL33C.glVertexAttribDivisor(2, 1);
+        GL33C.glEnableVertexAttribArray(3);
+        GL33C.glVertexAttribDivisor(3, 1);
+
+        GL33C.glBindVertexArray(0);
+        GL33C.glBindBuffer(GL33C.GL_ARRAY_BUFFER, 0);
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Add a body to the batch.
+     *
+     * @param body the body to add (not null, alias created)
+     */
+    void add(PhysicsRigidBody body) {
+        bodies.add(body);
+    }
+
+    /**
+     * Append the batch's bodies to the capture order of a snapshot.
+     *
+     * @param order the capture order (not null, modified)
+     */
+    void appendTo(List<PhysicsRigidBody> order) {
+        this.firstIndex = order.size();
+        order.addAll(bodies);
+    }
+
+    /**
+     * Delete the OpenGL objects of this batch. Must be invoked with the
+     * application's OpenGL context current.
+     */
+    void cleanUp() {
+        deleteInstanceBuffer();
+        GL33C.glDeleteBuffers(meshVbo);
+        GL33C.glDeleteVertexArrays(vao);
+        bodies.clear();
+    }
+
+    /**
+     * Return the number of bodies in the batch.
+     *
+     * @return the count (&ge;0)
+     */
+    int count() {
+        return bodies.size();
+    }
+
+    /**
+     * Remove a body from the batch.
+     *
+     * @param body the body to remove (not null)
+     * @return true if the body was removed, false if it wasn't found
+     */
+    boolean remove(PhysicsRigidBody body) {
+        boolean result = bodies.remove(body);
+        return result;
+    }
+
+    /**
+     * Stream the interpolated transforms of the bodies and draw them. Must be
+     * invoked with the application's OpenGL context current and the
+     * instancing shader program in use.
+     *
+     * @param colorLocation the location of the base-color uniform
+     * @param snapshot the captured transforms, in the order established by
+     * {@link #appendTo(java.util.List)} (not null, unaffected)
+     * @param alpha the interpolation fraction between the previous and
+     * current captures (&ge;0, &le;1)
+     */
+    void render(int colorLocation, TransformSnapshot snapshot, float alpha) {
+        int count = bodies.size();
+        if (count == 0) {
+            return;
+        }
+        ensureCapacity(count);
+
+        long byteOffset;
+        if (persistent) {
+            this.region = (region + 1) % numRegions;
+            awaitRegion(region);
+            byteOffset = (long) region * capacity * bytesPerInstance;
+            int floatOffset = (int) (byteOffset / Float.BYTES);
+            writeTransforms(mapped, floatOffset, snapshot, alpha);
+            GL33C.glBindBuffer(GL33C.GL_ARRAY_BUFFER, instanceVbo);
+
+        } else {
+            writeTransforms(staging, 0, snapshot, alpha);
+            staging.limit(count * bytesPerInstance / Float.BYTES);
+            GL33C.glBindBuffer(GL33C.GL_ARRAY_BUFFER, instanceVbo);
+            // Orphan the old storage, so the driver needn't wait for the GPU.
+            GL33C.glBufferData(GL33C.GL_ARRAY_BUFFER,
+                    (long) capacity * bytesPerInstance,
+                    GL33C.GL_STREAM_DRAW);
+            GL33C.glBufferSubData(GL33C.GL_ARRAY_BUFFER, 0L, staging);
+            staging.clear();
+            byteOffset = 0L;
+        }
+
+        GL33C.glBindVertexArray(vao);
+        GL33C.glVertexAttribPointer(2, 3, GL33C.GL_FLOAT, false,
+                bytesPerInstance, byteOffset);
+        GL33C.glVertexAttribPointer(3, 4, GL33C.GL_FLOAT, false,
+                bytesPerInstance, byteOffset + 3L * Float.BYTES);
+        GL33C.glUniform3f(colorLocation, red, green, blue);
+        GL33C.glDrawArraysInstanced(
+                GL33C.GL_TRIANGLES, 0, vertexCount, count);
+        GL33C.glBindVertexArray(0);
+        GL33C.glBindBuffer(GL33C.GL_ARRAY_BUFFER, 0);
+
+        if (persistent) {
+            fences[region] = GL33C.glFenceSync(
+                    GL33C.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        }
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Wait until the GPU has finished reading the specified region.
+     *
+     * @param index the index of the region
+     */
+    private void awaitRegion(int index) {
+        long fence = fences[index];
+        if (fence != 0L) {
+            GL33C.glClientWaitSync(fence, GL33C.GL_SYNC_FLUSH_COMMANDS_BIT,
+                    fenceTimeoutNanos);
+            GL33C.glDeleteSync(fence);
+            fences[index] = 0L;
+        }
+    }
+
+    /**
+     * Delete the instance buffer and its fences, if any.
+     */
+    private void deleteInstanceBuffer() {
+        for (int i = 0; i < numRegions; ++i) {
+            if (fences[i] != 0L) {
+                GL33C.glDeleteSync(fences[i]);
+                fences[i] = 0L;
+            }
+        }
+        if (instanceVbo != 0) {
+            if (mapped != null) {
+                GL33C.glBindBuffer(GL33C.GL_ARRAY_BUFFER, instanceVbo);
+                GL33C.glUnmapBuffer(GL33C.GL_ARRAY_BUFFER);
+                GL33C.glBindBuffer(GL33C.GL_ARRAY_BUFFER, 0);
+                this.mapped = null;
+            }
+            GL33C.glDeleteBuffers(instanceVbo);
+            this.instanceVbo = 0;
+        }
+        this.capacity = 0;
+    }
+
+    /**
+     * Ensure the instance buffer can hold the specified number of instances,
+     * re-creating it if necessary.
+     *
+     * @param count the number of instances (&gt;0)
+     */
+    private void ensureCapacity(int count) {
+        if (count <= capacity) {
+            return;
+        }
+
+        deleteInstanceBuffer();
+        int newCapacity = Math.max(minCapacity, 2 * count);
+        this.capacity = newCapacity;
+        long regionBytes = (long) newCapacity * bytesPerInstance;
+
+        this.instanceVbo = GL33C.glGenBuffers();
+        GL33C.glBindBuffer(GL33C.GL_ARRAY_BUFFER, instanceVbo);
+        if (persistent) {
+            long totalBytes = numRegions * regionBytes;
+            GL44C.glBufferStorage(
+                    GL33C.GL_ARRAY_BUFFER, totalBytes, storageFlags);
+            ByteBuffer bytes = GL33C.glMapBufferRange(
+                    GL33C.GL_ARRAY_BUFFER, 0L, totalBytes, storageFlags);
+            this.mapped = bytes.asFloatBuffer();
+            this.region = 0;
+        } else {
+            GL33C.glBufferData(
+                    GL33C.GL_ARRAY_BUFFER, regionBytes, GL33C.GL_STREAM_DRAW);
+            int numFloats = (int) (regionBytes / Float.BYTES);
+            if (staging == null || staging.capacity() < numFloats) {
+                this.staging = BufferUtils.createFloatBuffer(numFloats);
+            }
+        }
+        GL33C.glBindBuffer(GL33C.GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Generate flat normals for a non-indexed triangle mesh.
+     *
+     * @param positions the vertex positions (3 floats per vertex, not null,
+     * unaffected)
+     * @return a new buffer (6 floats per vertex: position then normal)
+     */
+    private static FloatBuffer interleaveNormals(FloatBuffer positions) {
+        int numVertices = positions.capacity() / 3;
+        FloatBuffer result
+                = BufferUtils.createFloatBuffer(numVertices * floatsPerVertex);
+        Vector3f a = new Vector3f();
+        Vector3f b = new Vector3f();
+        Vector3f c = new Vector3f();
+        for (int v = 0; v + 2 < numVertices; v += 3) {
+            a.set(positions.get(3 * v), positions.get(3 * v + 1),
+                    positions.get(3 * v + 2));
+            b.set(positions.get(3 * v + 3), positions.get(3 * v + 4),
+                    positions.get(3 * v + 5));
+            c.set(positions.get(3 * v + 6), positions.get(3 * v + 7),
+                    positions.get(3 * v + 8));
+            Vector3f normal = b.subtract(a).crossLocal(c.subtract(a));
+            normal.normalizeLocal();
+
+            for (int corner = 0; corner < 3; ++corner) {
+                int offset = 3 * (v + corner);
+                result.put(positions.get(offset))
+                        .put(positions.get(offset + 1))
+                        .put(positions.get(offset + 2))
+                        .put(normal.x).put(normal.y).put(normal.z);
+            }
+        }
+        result.flip();
+
+        return result;
+    }
+
+    /**
+     * Write the interpolated transform of each body into the specified
+     * buffer.
+     *
+     * @param buffer the destination (not null, modified)
+     * @param floatOffset the index of the first float to write
+     * @param snapshot the captured transforms (not null, unaffected)
+     * @param alpha the interpolation fraction (&ge;0, &le;1)
+     */
+    private void writeTransforms(FloatBuffer buffer, int floatOffset,
+            TransformSnapshot snapshot, float alpha) {
+        int count = bodies.size();
+        assert snapshot.count() >= firstIndex + count;
+
+        int offset = floatOffset;
+        for (int i = 0; i < count; ++i) {
+            int index = firstIndex + i;
+            snapshot.location(index, alpha, tmpLocation);
+            snapshot.rotation(index, alpha, tmpRotation);
+
+            buffer.put(offset, tmpLocation.x);
+            buffer.put(offset + 1, tmpLocation.y);
+            buffer.put(offset + 2, tmpLocation.z);
+            buffer.put(offset + 3, tmpRotation.getX());
+            buffer.put(offset + 4, tmpRotation.getY());
+            buffer.put(offset + 5, tmpRotation.getZ());
+            buffer.put(offset + 6, tmpRotation.getW());
+            offset += TransformExporter.stride;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+import com.jme3.bullet.collision.shapes.CollisionShape;
+import com.jme3.bullet.objects.PhysicsRigidBody;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.joml.Matrix4fc;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL33C;
+import org.lwjgl.opengl.GLCapabilities;
+
+/**
+ * Draw rigid bodies using one instanced draw call per collision shape, as an
+ * alternative to SPORT's per-body visuals. Bodies should share shapes (for
+ * instance, via a ShapeCache) to benefit. Transforms are read from a
+ * TransformSnapshot rather than from the bodies, so drawing may overlap a
+ * physics step. Must be used only on the render thread, with the
+ * application's OpenGL context current.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+final class InstancedRenderer {
+    // *************************************************************************
+    // constants
+
+    /**
+     * classpath of the fragment shader
+     */
+    final private static String fragmentShaderPath
+            = "/Shaders/Macana/InstancedShape.frag";
+    /**
+     * classpath of the vertex shader
+     */
+    final private static String vertexShaderPath
+            = "/Shaders/Macana/InstancedShape.vert";
+    // *************************************************************************
+    // fields
+
+    /**
+     * true if bodies have been added or removed since the capture order was
+     * built
+     */
+    private boolean isOrderStale;
+    /**
+     * true if persistently mapped buffers are supported
+     */
+    final private boolean persistent;
+    /**
+     * temporary storage for the world-to-clip matrix
+     */
+    final private FloatBuffer matrixBuffer = BufferUtils.createFloatBuffer(16);
+    /**
+     * locations of the shader uniforms
+     */
+    final private int colorLocation;
+    final private int lightLocation;
+    final private int matrixLocation;
+    /**
+     * OpenGL name of the shader program
+     */
+    final private int program;
+    /**
+     * batches, indexed by shape
+     */
+    final private Map<CollisionShape, InstanceBatch> batches
+            = new IdentityHashMap<>();
+    /**
+     * batches, indexed by body
+     */
+    final private Map<PhysicsRigidBody, InstanceBatch> batchOfBody
+            = new IdentityHashMap<>();
+    /**
+     * all bodies, batch by batch, in the order they're captured in snapshots
+     */
+    final private List<PhysicsRigidBody> captureOrder = new ArrayList<>();
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Compile the shader program and detect buffer-storage support.
+     */
+    InstancedRenderer() {
+        GLCapabilities capabilities = GL.getCapabilities();
+        this.persistent = capabilities.OpenGL44
+                || capabilities.GL_ARB_buffer_storage;
+
+        int vertexShader = compileShader(
+                GL33C.GL_VERTEX_SHADER, vertexShaderPath);
+        int fragmentShader = compileShader(
+                GL33C.GL_FRAGMENT_SHADER, fragmentShaderPath);
+        this.program = GL33C.glCreateProgram();
+        GL33C.glAttachShader(program, vertexShader);
+        GL33C.glAttachShader(program, fragmentShader);
+        GL33C.glLinkProgram(program);
+        GL33C.glDeleteShader(vertexShader);
+        GL33C.glDeleteShader(fragmentShader);
+        if (GL33C.glGetProgrami(program, GL33C.GL_LINK_STATUS)
+                == GL33C.GL_FALSE) {
+            String log = GL33C.glGetProgramInfoLog(program);
+            throw new IllegalStateException(
+                    "Failed to link the instancing program:\n" + log);
+        }
+
+        this.colorLocation = GL33C.glGetUniformLocation(program, "baseColor");
+        this.lightLocation
+                = GL33C.glGetUniformLocation(program, "lightDirection");
+        this.matrixLocation
+                = GL33C.glGetUniformLocation(program, "worldToClip");
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Add a body to the batch for its shape, creating the batch if necessary.
+     * The batch's color is determined by its first body.
+     *
+     * @param body the body to add (not null, not already added)
+     * @param red the red component of the base color (&ge;0, &le;1)
+     * @param green the green component of the base color (&ge;0, &le;1)
+     * @param blue the blue component of the base color (&ge;0, &le;1)
+     */
+    void add(PhysicsRigidBody body, float red, float green, float blue) {
+        assert !batchOfBody.containsKey(body);
+
+        CollisionShape shape = body.getCollisionShape();
+        InstanceBatch batch = batches.get(shape);
+        if (batch == null) {
+            batch = new InstanceBatch(shape, persistent, red, green, blue);
+            batches.put(shape, batch);
+        }
+        batch.add(body);
+        batchOfBody.put(body, batch);
+        this.isOrderStale = true;
+    }
+
+    /**
+     * Access the order in which bodies must be captured in the snapshot
+     * passed to {@link #render(org.joml.Matrix4fc, TransformSnapshot, float,
+     * float, float, float)}. May be read on a physics thread while the order
+     * isn't being updated.
+     *
+     * @return the pre-existing list (not null, don't modify)
+     */
+    List<PhysicsRigidBody> captureOrder() {
+        return captureOrder;
+    }
+
+    /**
+     * Delete all batches and the shader program.
+     */
+    void cleanUp() {
+        for (InstanceBatch batch : batches.values()) {
+            batch.cleanUp();
+        }
+        batches.clear();
+        batchOfBody.clear();
+        captureOrder.clear();
+        GL33C.glDeleteProgram(program);
+    }
+
+    /**
+     * Return the number of batches, which is the number of draw calls per
+     * frame.
+     *
+     * @return the count (&ge;0)
+     */
+    int countBatches() {
+        return batches.size();
+    }
+
+    /**
+     * Test whether persistently mapped buffers are in use.
+     *
+     * @return true if in use, otherwise false
+     */
+    boolean isPersistent() {
+        return persistent;
+    }
+
+    /**
+     * Remove a body from its batch, deleting the batch if it becomes empty.
+     *
+     * @param body the body to remove (not null)
+     * @return true if the body was removed, false if it wasn't found
+     */
+    boolean remove(PhysicsRigidBody body) {
+        InstanceBatch batch = batchOfBody.remove(body);
+        if (batch == null) {
+            return false;
+        }
+
+        batch.remove(body);
+        if (batch.count() == 0) {
+            batches.values().remove(batch);
+            batch.cleanUp();
+        }
+        this.isOrderStale = true;
+
+        return true;
+    }
+
+    /**
+     * Draw all batches.
+     *
+     * @param worldToClip the transform from world coordinates to clip space
+     * (not null, unaffected)
+     * @param snapshot the transforms of the bodies, captured in the current
+     * capture order (not null, unaffected)
+     * @param alpha the interpolation fraction between the previous and
+     * current captures (&ge;0, &le;1)
+     * @param lightX the X component of the light direction (in world
+     * coordinates, toward the scene, unit length)
+     * @param lightY the Y component of the light direction
+     * @param lightZ the Z component of the light direction
+     */
+    void render(Matrix4fc worldToClip, TransformSnapshot snapshot,
+            float alpha, float lightX, float lightY, float lightZ) {
+        if (batches.isEmpty()) {
+            return;
+        }
+
+        GL33C.glEnable(GL33C.GL_DEPTH_TEST);
+        GL33C.glDepthMask(true);
+        GL33C.glUseProgram(program);
+        worldToClip.get(matrixBuffer);
+        GL33C.glUniformMatrix4fv(matrixLocation, false, matrixBuffer);
+        GL33C.glUniform3f(lightLocation, lightX, lightY, lightZ);
+
+        for (InstanceBatch batch : batches.values()) {
+            batch.render(colorLocation, snapshot, alpha);
+        }
+        GL33C.glUseProgram(0);
+    }
+
+    /**
+     * Rebuild the capture order if bodies have been added or removed. Must
+     * not be invoked while a capture is in progress.
+     *
+     * @return true if the order was rebuilt, otherwise false
+     */
+    boolean updateCaptureOrder() {
+        if (!isOrderStale) {
+            return false;
+        }
+
+        captureOrder.clear();
+        for (InstanceBatch batch : batches.values()) {
+            batch.appendTo(captureOrder);
+        }
+        this.isOrderStale = false;
+
+        return true;
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Compile the shader at the specified classpath.
+     *
+     * @param type the type of shader (GL_VERTEX_SHADER or GL_FRAGMENT_SHADER)
+     * @param resourcePath the classpath of the source code (not null)
+     * @return the OpenGL name of the compiled shader
+     */
+    private static int compileShader(int type, String resourcePath) {
+        String source;
+        try (InputStream stream
+                = InstancedRenderer.class.getResourceAsStream(resourcePath)) {
+            if (stream == null) {
+                throw new IllegalStateException(
+                        "Missing resource: " + resourcePath);
+            }
+            byte[] bytes = stream.readAllBytes();
+            source = new String(bytes, StandardCharsets.UTF_8);
+        } catch (IOException exception) {
+            throw new IllegalStateException(
+                    "Failed to read " + resourcePath, exception);
+        }
+
+        int result = GL33C.glCreateShader(type);
+        GL33C.glShaderSource(result, source);
+        GL33C.glCompileShader(result);
+        if (GL33C.glGetShaderi(result, GL33C.GL_COMPILE_STATUS)
+                == GL33C.GL_FALSE) {
+            String log = GL33C.glGetShaderInfoLog(result);
+            GL33C.glDeleteShader(result);
+            throw new IllegalStateException(
+                    "Failed to compile " + resourcePath + ":\n" + log);
+        }
+
+        return result;
+    }
+}
@@ -28,23 +28,40 @@
  */
 package com.github.stephengold.macana;
 
+import com.github.stephengold.sport.Projection;
 import com.github.stephengold.sport.blend.BlendOp;
 import com.github.stephengold.sport.blend.OverOp;
 import com.github.stephengold.sport.input.InputManager;
 import com.github.stephengold.sport.input.InputProcessor;
 import com.github.stephengold.sport.physics.BasePhysicsApp;
 import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.collision.shapes.CollisionShape;
+import com.jme3.bullet.objects.PhysicsRigidBody;
+import com.jme3.bullet.util.NativeLibrary;
+import com.jme3.math.Vector3f;
 import example.ExampleComponentSkin;
 import example.ObsidianContext;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.DoubleSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import myworld.obsidian.ObsidianUI;
 import myworld.obsidian.display.Colors;
 import myworld.obsidian.display.skin.ComponentSkin;
+import myworld.obsidian.display.skin.StyleClass;
 import myworld.obsidian.display.skin.UISkin;
 import myworld.obsidian.display.skin.obsidian.ObsidianSkin;
 import myworld.obsidian.geometry.Dimension2D;
-import myworld.obsidian.input.Key;
-import myworld.obsidian.input.MouseButton;
-import myworld.obsidian.input.MouseWheelAxis;
+import myworld.obsidian.properties.ValueProperty;
+import myworld.obsidian.text.TextStyle;
+import org.joml.Matrix4f;
 import org.lwjgl.glfw.GLFW;
 
 /**
@@ -60,9 +77,162 @@ abstract class MacanaApp<T extends PhysicsSpace> extends BasePhysicsApp<T> {
      * blending op for the GUI overlay
      */
     final private static BlendOp guiBlendOp = new OverOp();
+    /**
+     * how long the window size must remain unchanged before the GUI surface
+     * is resized (in nanoseconds)
+     */
+    final private static long resizeSettleNanos = 100_000_000L;
+    /**
+     * maximum number of input events queued between GUI updates
+     */
+    final private static int guiInputCapacity = 256;
+    /**
+     * minimum interval between refreshes of the timing overlay (in
+     * nanoseconds)
+     */
+    final private static long overlayRefreshNanos = 500_000_000L;
+    /**
+     * maximum number of solvers in a PhysicsSpace
+     */
+    final private static int maxSolvers = 64;
+    /**
+     * records budgeted per second of retention when recording (a frame
+     * record, a merged cursor motion, and 2 other input records per frame at
+     * 60 frames per second)
+     */
+    final private static int recordsPerSecond = 240;
+    /**
+     * text drawn once during initialization to load each font's glyphs
+     */
+    final private static String fontSampleText = "0123456789 .,:;%+-=()/"
+            + " ABCDEFGHIJKLMNOPQRSTUVWXYZ abcdefghijklmnopqrstuvwxyz";
+    /**
+     * message logger for this class
+     */
+    final private static Logger logger
+            = Logger.getLogger(MacanaApp.class.getName());
+    /**
+     * direction of the light for instanced bodies (in world coordinates,
+     * toward the scene, unit length)
+     */
+    final private static Vector3f lightDirection
+            = new Vector3f(1f, -3f, -2f).normalizeLocal();
+    /**
+     * default bounds of the physics world, matching those of
+     * {@code new PhysicsSpace(broadphaseType)}
+     */
+    final private static Vector3f defaultWorldMax
+            = new Vector3f(10_000f, 10_000f, 10_000f);
+    final private static Vector3f defaultWorldMin
+            = new Vector3f(-10_000f, -10_000f, -10_000f);
     // *************************************************************************
     // fields
 
+    /**
+     * portion of the GUI surface that's been invalidated since the previous
+     * redraw
+     */
+    final private static DamageRegion guiDamage = new DamageRegion();
+    /**
+     * per-phase timings of recent frames
+     */
+    final private static FrameStats frameStats = new FrameStats();
+    /**
+     * input events waiting to be dispatched to the GUI
+     */
+    private static GuiInputQueue guiInput;
+    /**
+     * runner that drives a headless run, or null for interactive operation
+     */
+    private static HeadlessRunner headlessRunner;
+    /**
+     * processor that feeds input events to the GUI
+     */
+    private static InputProcessor guiProcessor;
+    /**
+     * recorder of frames and input events, or null if not recording
+     */
+    private static FrameRecorder recorder;
+    /**
+     * physics thread, or null if physics is stepped on the render thread
+     */
+    private static PhysicsWorker physicsWorker;
+    /**
+     * transforms of the instanced bodies after the 2 most recent physics
+     * steps
+     */
+    final private static TransformSnapshot physicsSnapshot
+            = new TransformSnapshot();
+    /**
+     * true if the snapshot doesn't reflect the current set of instanced
+     * bodies or their current transforms
+     */
+    private static boolean isSnapshotStale;
+    /**
+     * true if a pipelined physics step should be started during the current
+     * frame
+     */
+    private static boolean isStepDue;
+    /**
+     * interpolation fraction of the frame whose pipelined step is in progress
+     */
+    private static float pendingAlpha;
+    /**
+     * interpolation fraction for drawing the published snapshot (&ge;0,
+     * &lt;1)
+     */
+    private static float snapshotAlpha;
+    /**
+     * number of timesteps in the next pipelined physics step (written before
+     * the step is requested)
+     */
+    private static int pendingSubsteps;
+    /**
+     * state of the rigid bodies just after the space was populated
+     */
+    final private static BodyStateBuffer initialState = new BodyStateBuffer();
+    /**
+     * collision shapes shared among bodies
+     */
+    final private static ShapeCache shapeCache
+            = new ShapeCache(MacanaApp::forgetShape);
+    /**
+     * exports rigid-body transforms in bulk
+     */
+    final private static TransformExporter transformExporter
+            = new TransformExporter();
+    /**
+     * draws bodies that share shapes using instancing, or null if none
+     */
+    private static InstancedRenderer instancedRenderer;
+    /**
+     * transform from world coordinates to clip space, for instanced bodies
+     */
+    final private static Matrix4f worldToClip = new Matrix4f();
+    /**
+     * temporary storage for camera vectors
+     */
+    final private static Vector3f tmpDirection = new Vector3f();
+    final private static Vector3f tmpEye = new Vector3f();
+    final private static Vector3f tmpUp = new Vector3f();
+    /**
+     * GUI thread, or null if the GUI is updated on the render thread
+     */
+    private static GuiWorker guiWorker;
+    /**
+     * true to redraw the GUI only after it's been invalidated, false to redraw
+     * it during every frame
+     */
+    private static boolean trackGuiDamage;
+    /**
+     * true to refresh the GUI only after it's been invalidated, false to
+     * refresh it on a schedule
+     */
+    private static boolean refreshGuiOnDemand;
+    /**
+     * true if the GUI texture is out of date, otherwise false
+     */
+    private static volatile boolean isGuiDirty = true;
     /**
      * temporary storage for GLFW.glfwGetWindowContentScale() results
      */
@@ -82,9 +252,75 @@ abstract class MacanaApp<T extends PhysicsSpace> extends BasePhysicsApp<T> {
      */
     private static int guiWidth;
     /**
-     * system time as of the previous GUI update (or null if no previous update)
+     * height of a pending resize of the GUI surface
+     */
+    private static int pendingHeight;
+    /**
+     * width of a pending resize of the GUI surface
+     */
+    private static int pendingWidth;
+    /**
+     * system time when the pending size was first observed
+     */
+    private static long pendingSince;
+    /**
+     * system time at the start of the previous frame, or 0 if none
+     */
+    private static long lastFrameStart;
+    /**
+     * system time of the previous refresh of the timing overlay
+     */
+    private static long lastOverlayRefresh;
+    /**
+     * minimum interval between scheduled GUI refreshes (in nanoseconds, &ge;0,
+     * default=0)
+     */
+    private static long guiRefreshInterval;
+    /**
+     * true once the GUI has been updated at least once
+     */
+    private static boolean hasGuiUpdated;
+    /**
+     * true if fonts are warmed up during initialization (set using the
+     * "macana.fontWarmUp" system property, default=true)
+     */
+    private static boolean isFontWarmUp;
+    /**
+     * true while the warm-up draw is in progress, so its CPU time isn't
+     * recorded
+     */
+    private static boolean isWarmingUp;
+    /**
+     * CPU time of the first GUI draw after initialization (in nanoseconds),
+     * or -1 if none yet
+     */
+    private static long firstGuiDrawNanos = -1L;
+    /**
+     * frame-clock time accumulated since the previous GUI update (in seconds)
+     */
+    private static double guiPendingSeconds;
+    /**
+     * converts elapsed time into fixed physics timesteps, shared with the GUI
+     */
+    final private static FrameClock frameClock = new FrameClock();
+    /**
+     * tasks to execute before the next GUI update
      */
-    private static Long lastUpdate;
+    final private static Queue<Runnable> guiTasks
+            = new ConcurrentLinkedQueue<>();
+    /**
+     * reusable buffer for the text of the timing overlay
+     */
+    final private static StringBuilder overlayText = new StringBuilder(512);
+    /**
+     * components that draw sample text in fonts to be warmed up, until the
+     * warm-up draw
+     */
+    final private static List<TextButton> fontSamples = new ArrayList<>(4);
+    /**
+     * component that displays frame timings, or null if none
+     */
+    private static TextButton statsOverlay;
     /**
      * separate OpenGL context for Obsidian
      */
@@ -105,10 +341,574 @@ abstract class MacanaApp<T extends PhysicsSpace> extends BasePhysicsApp<T> {
     // *************************************************************************
     // new protected methods
 
+    /**
+     * Return the number of solvers a PhysicsSpace can run in parallel, based
+     * on the loaded native library. Only multithreaded ("Mt") flavors of
+     * Libbulletjme are thread-safe.
+     *
+     * @return the count (&ge;1, &le;64)
+     */
+    protected static int countParallelSolvers() {
+        int result = 1;
+        if (NativeLibrary.isThreadSafe()) {
+            result = Math.min(NativeLibrary.countThreads(), maxSolvers);
+            result = Math.max(result, 1);
+        }
+
+        return result;
+    }
+
+    /**
+     * Enqueue a task to be executed on the GUI thread before the next GUI
+     * update. Applications should use this to modify GUI components from
+     * outside GUI listeners when a GUI thread is in use.
+     *
+     * @param task the task to execute (not null)
+     */
+    protected static void enqueueGuiTask(Runnable task) {
+        guiTasks.add(task);
+        invalidateGui();
+    }
+
+    /**
+     * Write the current transforms of all rigid bodies in the space into a
+     * single direct buffer, 7 floats per body (location x, y, z, then
+     * rotation x, y, z, w), without per-body allocation. Use
+     * {@link #exportedBody(int)} to identify the body at each index. Must not
+     * be invoked while a pipelined physics step is in progress.
+     *
+     * @return a shared buffer, with position=0 and limit=7*bodyCount (valid
+     * until the next export)
+     */
+    protected FloatBuffer exportTransforms() {
+        FloatBuffer result = transformExporter.export(physicsSpace);
+        return result;
+    }
+
+    /**
+     * Access the body at the specified index in the most recent
+     * {@link #exportTransforms()}.
+     *
+     * @param index the index of the body (&ge;0, &lt;bodyCount)
+     * @return the pre-existing body (not null)
+     */
+    protected static PhysicsRigidBody exportedBody(int index) {
+        PhysicsRigidBody result = transformExporter.body(index);
+        return result;
+    }
+
+    /**
+     * Access the frame clock, which determines how many fixed physics
+     * timesteps to perform during each frame, the interpolation fraction for
+     * rendering, and the elapsed time passed to the GUI. Configure it before
+     * {@code initialize()}.
+     *
+     * @return the pre-existing instance (not null)
+     */
+    protected static FrameClock frameClock() {
+        return frameClock;
+    }
+
+    /**
+     * Start recording frames and input events to the specified file, for
+     * replay using {@code HeadlessRunner --replay=PATH}. The file is
+     * memory-mapped with a fixed size and retains only the most recent
+     * records. Recording also starts during {@code initialize()} if the
+     * "macana.record" system property names a file, with retention from the
+     * "macana.recordMinutes" property (default 10).
+     * <p>
+     * Cursor motions and scroll events are merged as they are for the GUI, so
+     * the budget holds for fast mice and trackpads. Sustained typing or
+     * clicking beyond about 2 events per frame shortens the retained span.
+     * Once the ring wraps, the file retains only the latest part of the
+     * session. A replay of that part still starts from the app's initial
+     * state (the scene and GUI as first populated), not from the state at
+     * the first retained frame, so it reproduces the timings only
+     * approximately. HeadlessRunner reports such replays as
+     * {@code "replayWrapped": true}.
+     *
+     * @param path the path of the file to create or truncate (not null)
+     * @param retentionMinutes how much recent history to retain (in minutes,
+     * &gt;0)
+     * @throws IOException if the file can't be created or mapped
+     */
+    protected static void startRecording(Path path, float retentionMinutes)
+            throws IOException {
+        if (!(retentionMinutes > 0f)) {
+            throw new IllegalArgumentException(
+                    "retentionMinutes = " + retentionMinutes);
+        }
+
+        stopRecording();
+        int capacity
+                = (int) Math.ceil(60f * retentionMinutes * recordsPerSecond);
+        recorder = new FrameRecorder(path, capacity);
+    }
+
+    /**
+     * Stop recording and close the recording file. Has no effect if not
+     * recording.
+     */
+    protected static void stopRecording() {
+        if (recorder != null) {
+            try {
+                recorder.close();
+            } catch (IOException exception) {
+                logger.log(Level.WARNING, "Failed to close the recording",
+                        exception);
+            }
+            recorder = null;
+        }
+    }
+
+    /**
+     * Access the per-phase frame timings, which are recorded during every
+     * frame. Should be invoked only on the render thread.
+     *
+     * @return the pre-existing instance (not null)
+     */
+    protected static FrameStats frameStats() {
+        return frameStats;
+    }
+
+    /**
+     * Mark the GUI texture as out of date, so the GUI will be redrawn during
+     * the next frame. Applications that alter the GUI by means other than
+     * input events or TextButton setters should invoke this method afterward.
+     * <p>
+     * Mouse motion alone doesn't invalidate the GUI. Only the hover and focus
+     * changes it causes do, through listeners that TextButton registers using
+     * {@link #invalidateGuiOnChange(ValueProperty)}. Apps that add other
+     * components styled by hover or focus should register them likewise.
+     */
+    protected static void invalidateGui() {
+        guiDamage.addAll();
+        isGuiDirty = true;
+    }
+
+    /**
+     * Invalidate the GUI whenever the specified property changes value, for
+     * instance the hover or focus state of a component. Obsidian invokes the
+     * listener on whichever thread updates the GUI.
+     *
+     * @param property the property to watch (not null)
+     */
+    protected static void invalidateGuiOnChange(ValueProperty<?> property) {
+        property.addListener((changed, oldValue, newValue) -> {
+            if (!Objects.equals(oldValue, newValue)) {
+                invalidateGui();
+            }
+        });
+    }
+
+    /**
+     * Test whether the GUI should be updated on a dedicated thread. If so,
+     * input dispatch, GUI listeners, and layout run concurrently with
+     * physics and 3-D rendering, and only the GUI draw happens on the render
+     * thread. GUI listeners must then avoid touching physics objects, and
+     * other code should modify the GUI only via
+     * {@link #enqueueGuiTask(java.lang.Runnable)}. Meant to be overridden.
+     *
+     * @return true to use a GUI thread, false to update on the render thread
+     * (default=false)
+     */
+    protected boolean hasGuiThread() {
+        return false;
+    }
+
+    /**
+     * Test whether physics should be stepped on a dedicated thread,
+     * overlapping the GUI draw, the instanced draw, the blend, and the buffer
+     * swap. Each step is joined before SPORT's visuals are drawn, so they
+     * remain consistent; instanced bodies are drawn from
+     * {@link #physicsSnapshot()}, so they needn't wait. GUI listeners may
+     * modify physics objects as usual, and so may InputProcessors added
+     * before {@code initialize()} completes, because input is held until the
+     * step completes. {@code render()} code that runs after
+     * {@code super.render()} must not modify physics objects. Meant to be
+     * overridden.
+     *
+     * @return true to pipeline physics, false to step on the render thread
+     * (default=false)
+     */
+    protected boolean isPhysicsPipelined() {
+        return false;
+    }
+
+    /**
+     * Mark a rectangular portion of the GUI texture as out of date. When
+     * damage tracking is enabled and only rectangles have been invalidated,
+     * the next redraw clears and resolves only their bounding rectangle.
+     * <p>
+     * Obsidian doesn't report component bounds, so every built-in
+     * invalidation (input events, GUI tasks, resizes, and TextButton setters)
+     * damages the whole GUI. The partial redraw therefore never happens
+     * unless the app disables those sources (for instance by not routing
+     * input to the GUI) and invalidates only rectangles it computes itself.
+     *
+     * @param x the left edge of the rectangle (in GUI pixels)
+     * @param y the top edge of the rectangle (in GUI pixels)
+     * @param width the width of the rectangle (in GUI pixels, &ge;0)
+     * @param height the height of the rectangle (in GUI pixels, &ge;0)
+     */
+    protected static void invalidateGui(int x, int y, int width, int height) {
+        guiDamage.add(x, y, width, height);
+        isGuiDirty = true;
+    }
+
+    /**
+     * Return the target rate for GUI refreshes.
+     *
+     * @return the rate (in Hertz, &ge;0, 0 &rarr; on demand, infinite &rarr;
+     * every frame)
+     */
+    protected static float guiRefreshRate() {
+        float result;
+        if (refreshGuiOnDemand) {
+            result = 0f;
+        } else if (guiRefreshInterval == 0L) {
+            result = Float.POSITIVE_INFINITY;
+        } else {
+            result = 1e9f / guiRefreshInterval;
+        }
+
+        return result;
+    }
+
+    /**
+     * Return the number of GUI textures to cycle through. With 1 (the
+     * default) each frame blends the GUI drawn during that same frame. With 2
+     * or more, the texture blended is the one completed during an earlier
+     * frame, which lets the GUI draw overlap the 3-D rendering but delays
+     * every GUI change (a hover highlight, a typed character) by one frame.
+     * Override to opt in when the GUI draw is costly and that latency is
+     * acceptable.
+     *
+     * @return the desired count (&ge;1, &le;3, default=1)
+     */
+    protected int guiTextureCount() {
+        return 1;
+    }
+
+    /**
+     * Test whether GUI damage tracking is enabled.
+     *
+     * @return true if enabled, otherwise false
+     */
+    protected static boolean isGuiDamageTracking() {
+        return trackGuiDamage;
+    }
+
+    /**
+     * Instantiate a PhysicsSpace with the specified broadphase and number of
+     * solvers. Meant to be invoked from {@code createSpace()}.
+     * <p>
+     * With more than one solver, contact islands are solved in parallel,
+     * which requires a thread-safe native library. If the loaded library
+     * isn't thread-safe, a single solver is used instead.
+     *
+     * @param broadphase the desired broadphase accelerator (not null)
+     * @param worldMin the desired minimum coordinates of the world (for
+     * AXIS_SWEEP_3 and AXIS_SWEEP_3_32, or null for the default)
+     * @param worldMax the desired maximum coordinates of the world (for
+     * AXIS_SWEEP_3 and AXIS_SWEEP_3_32, or null for the default)
+     * @param numSolvers the desired number of solvers (&ge;1, &le;64)
+     * @return a new instance
+     */
+    protected static PhysicsSpace newPhysicsSpace(
+            PhysicsSpace.BroadphaseType broadphase, Vector3f worldMin,
+            Vector3f worldMax, int numSolvers) {
+        if (numSolvers < 1 || numSolvers > maxSolvers) {
+            throw new IllegalArgumentException("numSolvers = " + numSolvers);
+        }
+
+        int actualSolvers = numSolvers;
+        if (numSolvers > 1 && !NativeLibrary.isThreadSafe()) {
+            logger.log(Level.WARNING, "The native library isn't thread-safe,"
+                    + " so the PhysicsSpace will use a single solver.");
+            actualSolvers = 1;
+        }
+        Vector3f min = (worldMin == null) ? defaultWorldMin : worldMin;
+        Vector3f max = (worldMax == null) ? defaultWorldMax : worldMax;
+        PhysicsSpace result
+                = new PhysicsSpace(min, max, broadphase, actualSolvers);
+
+        return result;
+    }
+
+    /**
+     * Access the transforms of the instanced bodies, captured after the 2
+     * most recent physics steps. Should be read only on the render thread.
+     *
+     * @return the pre-existing instance (not null)
+     */
+    protected static TransformSnapshot physicsSnapshot() {
+        return physicsSnapshot;
+    }
+
+    /**
+     * Remove the specified rigid body from the space and release its shape
+     * (if it came from {@link #shapeCache()}). When its last body is removed,
+     * a shape is evicted from the cache and dropped from the saved initial
+     * state, so nothing in Macana keeps its native object alive.
+     *
+     * @param body the body to remove (not null)
+     */
+    protected void removeRigidBody(PhysicsRigidBody body) {
+        if (physicsWorker != null) {
+            joinPhysicsStep();
+        }
+        physicsSpace.removeCollisionObject(body);
+        if (instancedRenderer != null && instancedRenderer.remove(body)) {
+            isSnapshotStale = true;
+        }
+        shapeCache.release(body.getCollisionShape());
+    }
+
+    /**
+     * Restore every rigid body to its initial state (location, orientation,
+     * velocities, and activation), keeping all shapes, bodies, and visuals.
+     * This is much faster than destroying and re-populating the space. Bodies
+     * added after the initial state was saved are unaffected, and removed
+     * bodies aren't re-added.
+     */
+    protected void restoreInitialState() {
+        if (physicsWorker != null) {
+            joinPhysicsStep();
+        }
+        initialState.restore();
+        isSnapshotStale = true;
+    }
+
+    /**
+     * Save the current state of every rigid body as its initial state. Invoked
+     * automatically after the space is populated; applications that add
+     * bodies later may invoke it again.
+     */
+    protected void saveInitialState() {
+        initialState.save(physicsSpace);
+    }
+
+    /**
+     * Access the cache of shared collision shapes. Bodies with identical
+     * shapes should acquire them from the cache (one acquisition per body) so
+     * they share a single native shape and a single visual mesh. Bodies so
+     * created should be removed using
+     * {@link #removeRigidBody(com.jme3.bullet.objects.PhysicsRigidBody)}.
+     *
+     * @return the pre-existing instance (not null)
+     */
+    protected static ShapeCache shapeCache() {
+        return shapeCache;
+    }
+
+    /**
+     * Visualize the specified rigid body using instancing, as an alternative
+     * to {@code visualizeShape()}. All instanced bodies that share a
+     * collision shape are drawn with a single draw call, so this is effective
+     * only for bodies whose shapes come from {@link #shapeCache()}.
+     *
+     * @param body the body to visualize (not null, not already visualized)
+     * @param red the red component of the color (&ge;0, &le;1)
+     * @param green the green component of the color (&ge;0, &le;1)
+     * @param blue the blue component of the color (&ge;0, &le;1)
+     */
+    protected static void visualizeInstanced(
+            PhysicsRigidBody body, float red, float green, float blue) {
+        if (physicsWorker != null) {
+            joinPhysicsStep(); // so the capture order can change
+        }
+        if (instancedRenderer == null) {
+            instancedRenderer = new InstancedRenderer();
+        }
+        instancedRenderer.add(body, red, green, blue);
+        isSnapshotStale = true;
+    }
+
+    /**
+     * Request that the specified font be loaded during initialization rather
+     * than during the first frame that displays it. Sample text in the font
+     * is drawn once through the GUI, so Obsidian's own font manager resolves
+     * the typeface and caches the glyphs. Should be invoked only from
+     * {@link #populateGui()}. The skin's default font is always warmed up.
+     *
+     * @param family the name of the font family (not null)
+     * @param size the font size (in pixels, &gt;0)
+     * @param style the font style, or null for the skin's style
+     */
+    protected static void warmUpFont(
+            String family, float size, TextStyle style) {
+        StyleClass textStyle = gui.getStyle("ExampleText");
+        TextButton sample = new TextButton(fontSampleText, textStyle)
+                .setFontFamily(family)
+                .setFontSize(size);
+        if (style != null) {
+            sample.setFontStyle(style);
+        }
+        gui.getRoot().addChild(sample);
+        fontSamples.add(sample);
+    }
+
+    /**
+     * Calculate the transform from world coordinates to clip space for
+     * instanced bodies, using the field of view and clipping planes of
+     * SPORT's projection and the pose of SPORT's camera, so instanced bodies
+     * line up with SPORT's visuals.
+     *
+     * @param storeResult storage for the result (not null, modified)
+     */
+    protected void worldToClip(Matrix4f storeResult) {
+        cam.location(tmpEye);
+        cam.direction(tmpDirection);
+        cam.upDirection(tmpUp);
+
+        long windowHandle = getInputManager().getGlfwWindowHandle();
+        GLFW.glfwGetFramebufferSize(windowHandle, widthArray, heightArray);
+        float aspectRatio = widthArray[0] / (float) Math.max(1, heightArray[0]);
+
+        Projection projection = getProjection();
+        storeResult.setPerspective(projection.fovy(), aspectRatio,
+                projection.zNear(), projection.zFar())
+                .lookAt(tmpEye.x, tmpEye.y, tmpEye.z,
+                        tmpEye.x + tmpDirection.x,
+                        tmpEye.y + tmpDirection.y,
+                        tmpEye.z + tmpDirection.z,
+                        tmpUp.x, tmpUp.y, tmpUp.z);
+    }
+
     /**
      * Add a components to the Obsidian GUI during initialization.
      */
     abstract protected void populateGui();
+
+    /**
+     * Enable or disable GUI damage tracking. When enabled, the GUI is redrawn
+     * only during frames in which it's been invalidated, and the previous GUI
+     * texture is re-used otherwise. When disabled (the default), the GUI is
+     * redrawn during every frame.
+     * <p>
+     * Tracking also permits a partial redraw limited to invalidated
+     * rectangles, but that path is inert in practice: the built-in
+     * invalidations all damage the whole GUI. See
+     * {@link #invalidateGui(int, int, int, int)}.
+     *
+     * @param enable true to enable tracking, false to disable it
+     */
+    protected static void setGuiDamageTracking(boolean enable) {
+        trackGuiDamage = enable;
+        invalidateGui();
+    }
+
+    /**
+     * Show or hide a GUI overlay that displays the frame timings. Should be
+     * invoked only after the GUI is populated.
+     *
+     * @param enable true to show the overlay, false to hide it
+     */
+    protected static void setFrameStatsOverlay(boolean enable) {
+        if (enable && statsOverlay == null) {
+            StyleClass style = gui.getStyle("ExampleText");
+            TextButton overlay = new TextButton("", style);
+            statsOverlay = overlay;
+            enqueueGuiTask(() -> gui.getRoot().addChild(overlay));
+
+        } else if (!enable && statsOverlay != null) {
+            TextButton overlay = statsOverlay;
+            statsOverlay = null;
+            enqueueGuiTask(() -> gui.getRoot().removeChild(overlay));
+        }
+    }
+
+    /**
+     * Return the keyboard modifiers in effect for the GUI event being
+     * dispatched, for instance to detect a shift-click in a button listener.
+     * A modifier remains in effect while either its left key or its right key
+     * is held. Should be invoked only from GUI listeners and tasks.
+     *
+     * @return a combination of GLFW_MOD_SHIFT, GLFW_MOD_CONTROL,
+     * GLFW_MOD_ALT, and GLFW_MOD_SUPER
+     */
+    protected static int guiModifiers() {
+        int result = guiInput.modifiers();
+        return result;
+    }
+
+    /**
+     * Alter the target rate for GUI refreshes, independent of the physics and
+     * 3-D rendering rates. A GUI refresh updates the GUI (input dispatch and
+     * layout) and then redraws it. Between refreshes, the previous GUI texture
+     * is re-used.
+     * <p>
+     * A rate of zero causes the GUI to be refreshed only during frames in
+     * which it's been invalidated. An infinite rate (the default) causes it to
+     * be refreshed during every frame.
+     *
+     * @param hertz the desired rate (in Hertz, &ge;0)
+     */
+    protected static void setGuiRefreshRate(float hertz) {
+        if (!(hertz >= 0f)) {
+            throw new IllegalArgumentException("hertz = " + hertz);
+        }
+
+        refreshGuiOnDemand = (hertz == 0f);
+        if (hertz == 0f || hertz == Float.POSITIVE_INFINITY) {
+            guiRefreshInterval = 0L;
+        } else {
+            guiRefreshInterval = (long) (1e9 / hertz);
+        }
+        invalidateGui();
+    }
+
+    /**
+     * Designate a list to scroll in response to vertical scroll-wheel input.
+     * Wheel input scrolls the list only while the cursor is within its
+     * laid-out bounds, as determined by Obsidian's hit-testing (hover state)
+     * after the preceding mouse motion. The hover state is refreshed during
+     * GUI updates, so a wheel event in the same update as the motion that
+     * entered the list may be ignored. At most one list can be designated,
+     * and it should be fully visible (not clipped by an ancestor), since
+     * hover is reported for hidden portions too. Invoke from
+     * {@link #populateGui()} or later.
+     *
+     * @param list the desired list, or null for none (alias created)
+     */
+    protected static void setGuiScrollTarget(VirtualList list) {
+        guiInput.setScrollTarget(list);
+    }
+    // *************************************************************************
+    // new methods exposed to HeadlessRunner
+
+    /**
+     * Arrange for the next app to be started to run headless: its window is
+     * created hidden (a display is still required), each frame advances by
+     * a fixed timestep, scripted input is delivered at the start of each
+     * frame, and the app stops after a fixed number of frames.
+     *
+     * @param runner the runner to use (not null, alias created)
+     */
+    static void setHeadlessRunner(HeadlessRunner runner) {
+        headlessRunner = runner;
+    }
+
+    /**
+     * Return the CPU time of the first GUI draw after initialization. With
+     * fonts warmed up, it should be close to that of later draws.
+     *
+     * @return the duration (in nanoseconds) or -1 if the GUI hasn't been
+     * drawn yet
+     */
+    static long firstGuiDrawNanos() {
+        return firstGuiDrawNanos;
+    }
+
+    /**
+     * Test whether fonts were warmed up during initialization.
+     *
+     * @return true if warmed up, otherwise false
+     */
+    static boolean isFontWarmUp() {
+        return isFontWarmUp;
+    }
     // *************************************************************************
     // BasePhysicsApp methods
 
@@ -117,6 +917,22 @@ abstract class MacanaApp<T extends PhysicsSpace> extends BasePhysicsApp<T> {
      */
     @Override
     protected void cleanUp() {
+        stopRecording();
+        if (physicsWorker != null) {
+            joinPhysicsStep();
+            physicsWorker.stop();
+            physicsWorker = null;
+        }
+        initialState.clear();
+        if (instancedRenderer != null) {
+            instancedRenderer.cleanUp();
+            instancedRenderer = null;
+        }
+        shapeCache.clear();
+        if (guiWorker != null) {
+            guiWorker.stop();
+            guiWorker = null;
+        }
         if (context != null) {
             context.close();
         }
@@ -142,6 +958,8 @@ abstract class MacanaApp<T extends PhysicsSpace> extends BasePhysicsApp<T> {
 
         // Create an initialize the Obsidian rendering context:
         context = new ObsidianContext(gui);
+        int numTextures = guiTextureCount();
+        context.setBufferCount(numTextures);
 
         Dimension2D size = new Dimension2D(guiWidth, guiHeight);
         Integer msaaSamples = msaaSamples();
@@ -149,11 +967,70 @@ abstract class MacanaApp<T extends PhysicsSpace> extends BasePhysicsApp<T> {
         InputManager inputManager = getInputManager();
         long windowHandle = inputManager.getGlfwWindowHandle();
         context.init(size, msaa, windowHandle);
+        context.setTimingListener(new ObsidianContext.TimingListener() {
+            @Override
+            public void cpuTimes(long drawNanos, long blitNanos) {
+                if (isWarmingUp) {
+                    return;
+                }
+                if (firstGuiDrawNanos < 0L) {
+                    firstGuiDrawNanos = drawNanos;
+                    logger.log(Level.INFO,
+                            "First GUI draw took {0} ns (font warm-up {1})",
+                            new Object[]{drawNanos, isFontWarmUp});
+                }
+                frameStats.record(FramePhase.GUI_DRAW, drawNanos);
+                frameStats.record(FramePhase.GUI_BLIT, blitNanos);
+            }
+
+            @Override
+            public void gpuTimes(long drawNanos, long blitNanos) {
+                frameStats.record(FramePhase.GPU_GUI_DRAW, drawNanos);
+                frameStats.record(FramePhase.GPU_GUI_BLIT, blitNanos);
+            }
+        });
 
         addGuiInput();
         populateGui();
+        isFontWarmUp = Boolean.parseBoolean(
+                System.getProperty("macana.fontWarmUp", "true"));
+        warmUpFonts(isFontWarmUp);
+
+        String recordPath = System.getProperty("macana.record");
+        if (recordPath != null) {
+            float minutes = Float.parseFloat(
+                    System.getProperty("macana.recordMinutes", "10"));
+            try {
+                startRecording(Path.of(recordPath), minutes);
+            } catch (IOException exception) {
+                logger.log(Level.WARNING, "Failed to start recording",
+                        exception);
+            }
+        }
+
+        if (headlessRunner != null && GLFW.glfwGetWindowAttrib(
+                windowHandle, GLFW.GLFW_VISIBLE) == GLFW.GLFW_TRUE) {
+            // SPORT reset the window hints or showed the window.
+            logger.log(Level.WARNING,
+                    "Window was created visible; hiding it.");
+            GLFW.glfwHideWindow(windowHandle);
+        }
+
+        if (hasGuiThread()) {
+            guiWorker = new GuiWorker(gui, guiInput, guiTasks);
+            guiWorker.start();
+        }
 
         super.initialize(); // initialize the physics
+        physicsSpace.setAccuracy(frameClock.timestep());
+        saveInitialState();
+
+        if (isPhysicsPipelined()) {
+            physicsWorker = new PhysicsWorker(
+                    () -> stepPhysics(pendingSubsteps));
+            physicsWorker.start();
+            addPhysicsInputGate();
+        }
     }
 
     /**
@@ -161,40 +1038,215 @@ abstract class MacanaApp<T extends PhysicsSpace> extends BasePhysicsApp<T> {
      */
     @Override
     protected void render() {
-        super.render();
+        long frameStart = System.nanoTime();
+        if (lastFrameStart != 0L) {
+            frameStats.record(FramePhase.FRAME, frameStart - lastFrameStart);
+        }
+        lastFrameStart = frameStart;
+        if (headlessRunner != null) {
+            headlessRunner.beginFrame(guiProcessor);
+            frameClock.advanceBy(headlessRunner.frameSeconds());
+        } else {
+            frameClock.advanceTo(frameStart);
+        }
+        if (recorder != null) {
+            recorder.recordFrame(frameClock);
+        }
+        guiPendingSeconds += frameClock.frameSeconds();
 
-        updateGuiSurface();
+        super.render();
 
         long nanoTime = System.nanoTime();
-        float seconds
-                = (lastUpdate == null) ? 0f : 1e-9f * (nanoTime - lastUpdate);
-        lastUpdate = nanoTime;
-        gui.update(seconds);
+        if (guiWorker == null) {
+            updateGuiSurface();
+            long surfaceNanos = System.nanoTime();
+            frameStats.record(FramePhase.GUI_SURFACE, surfaceNanos - nanoTime);
 
-        context.render();
+            boolean redraw = false;
+            if (isGuiRefreshDue()) {
+                guiInput.flush();
+                guiInput.drain(gui);
+                int numTasks = GuiWorker.runTasks(guiTasks);
+                if (numTasks > 0) {
+                    invalidateGui();
+                }
+                float seconds = guiSeconds();
+                gui.update(seconds);
+                frameStats.record(FramePhase.GUI_UPDATE,
+                        System.nanoTime() - surfaceNanos);
 
-        int textureName = context.getTextureHandle();
+                redraw = isGuiDirty || !trackGuiDamage;
+            }
+
+            // GUI listeners are done with physics, so a step can start.
+            launchPhysicsStep();
+            if (redraw) {
+                redrawGui();
+            }
+
+        } else {
+            launchPhysicsStep();
+            if (guiWorker.tryBeginDraw()) {
+                // The GUI thread is idle, so the GUI can be resized and drawn.
+                long updateNanos = guiWorker.takeUpdateNanos();
+                if (updateNanos >= 0L) {
+                    frameStats.record(FramePhase.GUI_UPDATE, updateNanos);
+                }
+
+                updateGuiSurface();
+                frameStats.record(FramePhase.GUI_SURFACE,
+                        System.nanoTime() - nanoTime);
+
+                if (isGuiRefreshDue()) {
+                    if (isGuiDirty || !trackGuiDamage) {
+                        redrawGui();
+                    }
+                    guiInput.flush(); // so the GUI thread sees merged events
+                    float seconds = guiSeconds();
+                    guiWorker.requestUpdate(seconds);
+                } else {
+                    guiWorker.endDraw();
+                }
+            }
+        }
+
+        if (instancedRenderer != null) {
+            // Reads only the snapshot, so it may overlap a physics step.
+            long instancedStart = System.nanoTime();
+            syncSnapshot();
+            worldToClip(worldToClip);
+            instancedRenderer.render(worldToClip, physicsSnapshot,
+                    snapshotAlpha, lightDirection.x, lightDirection.y,
+                    lightDirection.z);
+            frameStats.record(FramePhase.INSTANCED,
+                    System.nanoTime() - instancedStart);
+        }
+
+        long blendStart = System.nanoTime();
+        int textureName = context.acquireTexture();
         blendTexture(textureName, guiBlendOp);
+        context.releaseTexture();
+        frameStats.record(FramePhase.BLEND, System.nanoTime() - blendStart);
+
+        if (statsOverlay != null
+                && nanoTime - lastOverlayRefresh >= overlayRefreshNanos) {
+            lastOverlayRefresh = nanoTime;
+            refreshStatsOverlay();
+        }
+
+        if (headlessRunner != null && headlessRunner.endFrame()) {
+            long windowHandle = getInputManager().getGlfwWindowHandle();
+            GLFW.glfwSetWindowShouldClose(windowHandle, true);
+        }
+    }
+
+    /**
+     * Advance the physics simulation by the number of fixed timesteps that the
+     * frame clock says are due, timing the steps.
+     *
+     * @param wallClockSeconds the elapsed wall-clock time according to SPORT
+     * (ignored in favor of the frame clock)
+     */
+    @Override
+    public void updatePhysics(float wallClockSeconds) {
+        int numSteps = frameClock.substeps();
+
+        if (physicsWorker == null) {
+            syncSnapshot();
+            long startNanos = System.nanoTime();
+            stepPhysics(numSteps);
+            if (numSteps > 0) {
+                long elapsedNanos = System.nanoTime() - startNanos;
+                long stepNanos = elapsedNanos / numSteps;
+                frameStats.record(FramePhase.PHYSICS, stepNanos);
+            }
+            physicsSnapshot.publish();
+            snapshotAlpha = frameClock.alpha();
+
+        } else {
+            /*
+             * Finish the step started during the previous frame. The snapshot
+             * then reflects that frame, so draw it with that frame's alpha.
+             */
+            joinPhysicsStep();
+            snapshotAlpha = pendingAlpha;
+            pendingAlpha = frameClock.alpha();
+            pendingSubsteps = numSteps;
+            isStepDue = (numSteps > 0);
+        }
     }
     // *************************************************************************
     // private methods
 
+    /**
+     * Add an InputProcessor that waits for any pipelined physics step to
+     * complete before passing an input event along the chain, so processors
+     * added earlier may modify physics objects. SPORT invokes the most
+     * recently added processor first.
+     */
+    private static void addPhysicsInputGate() {
+        InputProcessor gate = new InputProcessor() {
+            @Override
+            public void onCharacter(int codePoint) {
+                joinPhysicsStep();
+                super.onCharacter(codePoint);
+            }
+
+            @Override
+            public void onKeyboard(int glfwKey, boolean isPressed) {
+                joinPhysicsStep();
+                super.onKeyboard(glfwKey, isPressed);
+            }
+
+            @Override
+            public void onMouseButton(int glfwButton, boolean isPressed) {
+                joinPhysicsStep();
+                super.onMouseButton(glfwButton, isPressed);
+            }
+
+            @Override
+            public void onMouseMotion(double rightFraction, double upFraction) {
+                joinPhysicsStep();
+                super.onMouseMotion(rightFraction, upFraction);
+            }
+
+            @Override
+            public void onScrollMotion(double xScroll, double yScroll) {
+                joinPhysicsStep();
+                super.onScrollMotion(xScroll, yScroll);
+            }
+        };
+        getInputManager().add(gate);
+    }
+
     /**
      * Add an InputProcessor for the Obsidian GUI.
      */
     private static void addGuiInput() {
         InputManager inputManager = getInputManager();
+        DoubleSupplier cursorX = (headlessRunner == null)
+                ? inputManager::glfwCursorX
+                : () -> headlessRunner.cursorX(inputManager.glfwCursorX());
+        DoubleSupplier cursorY = (headlessRunner == null)
+                ? inputManager::glfwCursorY
+                : () -> headlessRunner.cursorY(inputManager.glfwCursorY());
+        guiInput = new GuiInputQueue(guiInputCapacity, cursorX, cursorY);
+
         InputProcessor processor = new InputProcessor() {
             @Override
             public void onCharacter(int codePoint) {
-                char[] characters = Character.toChars(codePoint);
-                gui.getInput().fireCharacterEvent(characters);
+                if (recorder != null) {
+                    recorder.recordCharacter(codePoint);
+                }
+                guiInput.addCharacter(codePoint);
             }
 
             @Override
             public void onKeyboard(int glfwKey, boolean isPressed) {
-                Key obsidianId = Convert.convertGlfwKey(glfwKey);
-                gui.getInput().fireKeyEvent(obsidianId, isPressed);
+                if (recorder != null) {
+                    recorder.recordKey(glfwKey, isPressed);
+                }
+                guiInput.addKey(glfwKey, isPressed);
                 /*
                  * BaseApplication has already added processors
                  * for KEY_ESCAPE and KEY_C:
@@ -204,37 +1256,180 @@ abstract class MacanaApp<T extends PhysicsSpace> extends BasePhysicsApp<T> {
 
             @Override
             public void onMouseButton(int glfwButton, boolean isPressed) {
-                MouseButton obsidianId
-                        = Convert.convertGlfwMouseButton(glfwButton);
-                int x = (int) inputManager.glfwCursorX();
-                int y = (int) inputManager.glfwCursorY();
-                gui.getInput().fireMouseButtonEvent(obsidianId, isPressed, x, y);
+                if (recorder != null) {
+                    recorder.recordMouseButton(glfwButton, isPressed,
+                            cursorX.getAsDouble(), cursorY.getAsDouble());
+                }
+                guiInput.addMouseButton(glfwButton, isPressed);
             }
 
             @Override
             public void onMouseMotion(double rightFraction, double upFraction) {
-                int x = (int) inputManager.glfwCursorX();
-                int y = (int) inputManager.glfwCursorY();
-                gui.getInput().fireMouseMoveEvent(x, y);
+                if (recorder != null) {
+                    recorder.recordMouseMove(
+                            cursorX.getAsDouble(), cursorY.getAsDouble());
+                }
+                guiInput.addMouseMove();
             }
 
             @Override
             public void onScrollMotion(double xScroll, double yScroll) {
-                int x = (int) inputManager.glfwCursorX();
-                int y = (int) inputManager.glfwCursorY();
-
-                if (xScroll != 0.) {
-                    gui.getInput().fireMouseWheelEvent(
-                            MouseWheelAxis.HORIZONTAL, x, y, (float) xScroll);
-                }
-
-                if (yScroll != 0.) {
-                    gui.getInput().fireMouseWheelEvent(
-                            MouseWheelAxis.VERTICAL, x, y, (float) yScroll);
+                if (recorder != null) {
+                    recorder.recordScroll(xScroll, yScroll);
                 }
+                guiInput.addScroll(xScroll, yScroll);
             }
         };
         inputManager.add(processor);
+        guiProcessor = processor;
+    }
+
+    /**
+     * Determine the frame-clock time since the previous GUI update and start
+     * accumulating time for the next one.
+     *
+     * @return the elapsed time (in seconds, &ge;0)
+     */
+    private static float guiSeconds() {
+        float result = hasGuiUpdated ? (float) guiPendingSeconds : 0f;
+        hasGuiUpdated = true;
+        guiPendingSeconds = 0.;
+
+        return result;
+    }
+
+    /**
+     * Test whether the GUI should be refreshed during the current frame.
+     *
+     * @return true if a refresh is due, otherwise false
+     */
+    private static boolean isGuiRefreshDue() {
+        boolean result;
+        if (refreshGuiOnDemand) {
+            result = isGuiDirty;
+        } else if (!hasGuiUpdated) {
+            result = true;
+        } else {
+            result = (guiPendingSeconds * 1e9 >= guiRefreshInterval);
+        }
+
+        return result;
+    }
+
+    /**
+     * Perform the specified number of fixed timesteps, capturing the
+     * transforms of instanced bodies after the last 2. Invoked on the render
+     * thread, or on the physics thread when physics is pipelined.
+     *
+     * @param numSteps the number of timesteps (&ge;0)
+     */
+    private void stepPhysics(int numSteps) {
+        List<PhysicsRigidBody> captureOrder = (instancedRenderer == null)
+                ? null : instancedRenderer.captureOrder();
+        float timestep = frameClock.timestep();
+        for (int i = 0; i < numSteps; ++i) {
+            // maxSteps=0 performs a single step of exactly the timestep.
+            physicsSpace.update(timestep, 0);
+            if (captureOrder != null && i >= numSteps - 2) {
+                boolean asPrevious = (i == numSteps - 2);
+                physicsSnapshot.capture(captureOrder, asPrevious);
+            }
+        }
+    }
+
+    /**
+     * If instanced bodies have been added, removed, or restored since the
+     * snapshot was captured, re-capture their transforms as both current and
+     * previous, so nothing is interpolated across the change. Invoked on the
+     * render thread.
+     */
+    private static void syncSnapshot() {
+        if (!isSnapshotStale || instancedRenderer == null) {
+            return;
+        }
+        if (physicsWorker != null) {
+            joinPhysicsStep(); // The worker reads the capture order.
+        }
+
+        instancedRenderer.updateCaptureOrder();
+        List<PhysicsRigidBody> captureOrder = instancedRenderer.captureOrder();
+        for (int i = 0; i < 2; ++i) {
+            physicsSnapshot.capture(captureOrder, false);
+            physicsSnapshot.publish();
+        }
+        isSnapshotStale = false;
+    }
+
+    /**
+     * Drop the remaining references to a shape evicted from the shape cache.
+     * The instanced batch for the shape has already been deleted along with
+     * its last body. SPORT hides visuals of removed bodies during its next
+     * render.
+     *
+     * @param shape the evicted shape (not null)
+     */
+    private static void forgetShape(CollisionShape shape) {
+        initialState.forget(shape);
+    }
+
+    /**
+     * Wait for the pipelined physics step (if any) to complete, then publish
+     * its results.
+     */
+    private static void joinPhysicsStep() {
+        long waitStart = System.nanoTime();
+        long workerNanos = physicsWorker.join();
+        if (workerNanos >= 0L) {
+            // A step is launched only if it has substeps.
+            long stepNanos = workerNanos / pendingSubsteps;
+            frameStats.record(FramePhase.PHYSICS, stepNanos);
+            frameStats.record(FramePhase.PHYSICS_WAIT,
+                    System.nanoTime() - waitStart);
+            physicsSnapshot.publish();
+        }
+    }
+
+    /**
+     * If physics is pipelined and a step is due, start it on the physics
+     * thread.
+     */
+    private static void launchPhysicsStep() {
+        if (physicsWorker != null && isStepDue) {
+            syncSnapshot(); // The worker captures in the current order.
+            isStepDue = false;
+            physicsWorker.requestStep();
+        }
+    }
+
+    /**
+     * Redraw the GUI, limiting the redraw to the damaged region if possible.
+     * Only app-supplied rectangles ever limit it; built-in invalidations
+     * damage everything.
+     */
+    private static void redrawGui() {
+        isGuiDirty = false;
+        if (!trackGuiDamage || guiDamage.isFull()) {
+            context.render();
+        } else if (!guiDamage.isEmpty()) {
+            int x = guiDamage.x();
+            int y = guiDamage.y();
+            int width = guiDamage.width();
+            int height = guiDamage.height();
+            context.render(x, y, width, height);
+        }
+        guiDamage.clear();
+    }
+
+    /**
+     * Update the timing overlay with the latest frame timings.
+     */
+    private static void refreshStatsOverlay() {
+        overlayText.setLength(0);
+        frameStats.appendSummary(overlayText);
+        String text = overlayText.toString();
+
+        TextButton overlay = statsOverlay;
+        enqueueGuiTask(() -> overlay.setText(text));
     }
 
     /**
@@ -252,13 +1447,66 @@ abstract class MacanaApp<T extends PhysicsSpace> extends BasePhysicsApp<T> {
         if (gui == null) {
             gui = ObsidianUI.createHeadless();
             assert gui != null;
+            guiWidth = renderWidth;
+            guiHeight = renderHeight;
+            return;
+        }
+
+        if (renderWidth == guiWidth && renderHeight == guiHeight
+                || renderWidth <= 0 || renderHeight <= 0) {
+            // no resize needed, or the window is minimized
+            pendingWidth = guiWidth;
+            pendingHeight = guiHeight;
+            return;
+        }
+        /*
+         * While the window is being resized interactively, keep blending
+         * the old GUI texture. Resize the surface only after the size
+         * has settled.
+         */
+        long nanoTime = System.nanoTime();
+        if (renderWidth != pendingWidth || renderHeight != pendingHeight) {
+            pendingWidth = renderWidth;
+            pendingHeight = renderHeight;
+            pendingSince = nanoTime;
 
-        } else if (renderWidth != guiWidth || renderHeight != guiHeight) {
+        } else if (nanoTime - pendingSince >= resizeSettleNanos) {
             Dimension2D size = new Dimension2D(renderWidth, renderHeight);
             context.resize(size);
+            invalidateGui();
+
+            guiWidth = renderWidth;
+            guiHeight = renderHeight;
+        }
+    }
+
+    /**
+     * Update and draw the populated GUI once, along with samples of the
+     * default font and any fonts requested using {@code warmUpFont()}, so
+     * fonts are loaded and text is shaped before the first frame. Then remove
+     * the samples. The CPU time of the warm-up draw isn't recorded.
+     *
+     * @param enable true to warm up, false to just remove the samples (for
+     * measuring the first frame without warm-up)
+     */
+    private static void warmUpFonts(boolean enable) {
+        if (enable) {
+            warmUpFont(ExampleComponentSkin.TEXT_FONT_FAMILY,
+                    ExampleComponentSkin.TEXT_FONT_SIZE, null);
+            // Lay out the samples, so they're drawn with their fonts:
+            gui.update(0f);
+            isWarmingUp = true;
+            try {
+                context.render();
+            } finally {
+                isWarmingUp = false;
+            }
         }
 
-        guiWidth = renderWidth;
-        guiHeight = renderHeight;
+        for (TextButton sample : fontSamples) {
+            gui.getRoot().removeChild(sample);
+        }
+        fontSamples.clear();
+        invalidateGui();
     }
 }
@@ -0,0 +1,355 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+import com.github.stephengold.sport.Constants;
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.collision.shapes.CollisionShape;
+import com.jme3.bullet.collision.shapes.PlaneCollisionShape;
+import com.jme3.bullet.objects.PhysicsBody;
+import com.jme3.bullet.objects.PhysicsRigidBody;
+import com.jme3.math.Plane;
+import com.jme3.math.Vector3f;
+import example.ExampleComponentSkin;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import myworld.obsidian.display.skin.StyleClass;
+import myworld.obsidian.events.scene.ButtonEvent;
+import myworld.obsidian.geometry.Distance;
+import myworld.obsidian.layout.Offsets;
+
+/**
+ * Stress test: drop thousands of balls onto a plane and report the time per
+ * physics step.
+ * <p>
+ * Configured using system properties:
+ * <ul>
+ * <li>{@code macana.balls}: the number of balls (default=4000)</li>
+ * <li>{@code macana.solvers}: the number of parallel solvers (default=as
+ * many as the native library supports)</li>
+ * <li>{@code macana.broadphase}: DBVT (the default) or AXIS_SWEEP_3</li>
+ * <li>{@code macana.pipelined}: true to step physics on a dedicated thread
+ * (default=false)</li>
+ * <li>{@code macana.instanced}: false to visualize each ball separately
+ * instead of using instancing (default=true)</li>
+ * </ul>
+ * Parallel solvers require a multithreaded ("Mt") flavor of the native
+ * library.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class ManyBalls extends MacanaApp<PhysicsSpace> {
+    // *************************************************************************
+    // constants
+
+    /**
+     * distance between adjacent balls when dropped
+     */
+    final private static float ballSpacing = 0.7f;
+    /**
+     * radius of each ball
+     */
+    final private static float ballRadius = 0.3f;
+    /**
+     * Y coordinate of the floor
+     */
+    final private static float floorY = -1f;
+    /**
+     * number of balls in each row and column of a layer
+     */
+    final private static int layerSide = 20;
+    /**
+     * number of visible rows in the list of balls
+     */
+    final private static int listRows = 12;
+    /**
+     * interval between updates of the status text (in nanoseconds)
+     */
+    final private static long statusNanos = 1_000_000_000L;
+    /**
+     * world bounds for the AXIS_SWEEP_3 broadphase, with room for the balls
+     * to scatter
+     */
+    final private static Vector3f worldMax = new Vector3f(50f, 200f, 50f);
+    final private static Vector3f worldMin = new Vector3f(-50f, -10f, -50f);
+    /**
+     * message logger for this class
+     */
+    final private static Logger logger
+            = Logger.getLogger(ManyBalls.class.getName());
+    // *************************************************************************
+    // fields
+
+    /**
+     * true to visualize the balls using instancing
+     */
+    final private boolean instanced;
+    /**
+     * true to step physics on a dedicated thread
+     */
+    final private boolean pipelined;
+    /**
+     * number of balls to drop
+     */
+    final private int numBalls;
+    /**
+     * number of solvers in the PhysicsSpace
+     */
+    private int numSolvers;
+    /**
+     * number of parallel solvers, or 0 for as many as possible
+     */
+    final private int requestedSolvers;
+    /**
+     * system time of the previous status update
+     */
+    private long lastStatus;
+    /**
+     * broadphase accelerator to use
+     */
+    final private PhysicsSpace.BroadphaseType broadphase;
+    /**
+     * displays the step time
+     */
+    private TextButton statusText;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate the app, configured using system properties.
+     */
+    public ManyBalls() {
+        this.numBalls = Integer.getInteger("macana.balls", 4000);
+        this.requestedSolvers = Integer.getInteger("macana.solvers", 0);
+        String bpName = System.getProperty("macana.broadphase", "DBVT");
+        this.broadphase = PhysicsSpace.BroadphaseType.valueOf(bpName);
+        this.pipelined = Boolean.getBoolean("macana.pipelined");
+        this.instanced = Boolean.parseBoolean(
+                System.getProperty("macana.instanced", "true"));
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Main entry point for the ManyBalls application.
+     *
+     * @param arguments array of command-line arguments (not null)
+     */
+    public static void main(String[] arguments) {
+        Logger.getLogger("").setLevel(Level.WARNING);
+        logger.setLevel(Level.INFO); // for the summary at exit
+
+        ManyBalls application = new ManyBalls();
+        application.start();
+    }
+    // *************************************************************************
+    // MacanaApp methods
+
+    /**
+     * Test whether physics should be stepped on a dedicated thread.
+     *
+     * @return true to pipeline physics, otherwise false
+     */
+    @Override
+    protected boolean isPhysicsPipelined() {
+        return pipelined;
+    }
+
+    /**
+     * Add a status display, a restart button, and a scrollable list of balls
+     * to the Obsidian GUI. Invoked once during initialization.
+     */
+    @Override
+    protected void populateGui() {
+        SimpleLayout layout = new SimpleLayout();
+        gui.getRoot().addChild(layout);
+
+        StyleClass style = gui.getStyle("ExampleText");
+        Offsets margin = new Offsets(Distance.pixels(5f));
+        warmUpFont(ExampleComponentSkin.TEXT_FONT_FAMILY, 18f, null);
+        warmUpFont(ExampleComponentSkin.TEXT_FONT_FAMILY, 24f, null);
+
+        this.statusText = new TextButton("", style);
+        layout.addToColumn(statusText);
+        statusText.setFontSize(18f).setLayoutMargin(margin);
+
+        TextButton restartButton = new TextButton("Restart", style);
+        layout.addToColumn(restartButton);
+        restartButton.addButtonListener(
+                ButtonEvent::isClicked, event -> restartSimulation());
+        restartButton.setFontSize(24f).setLayoutMargin(margin);
+
+        // A scrollable list of balls that creates only the visible rows:
+        VirtualList ballList = new VirtualList(listRows, style,
+                (button, index) -> button.setText(describeBall(index)));
+        layout.addToColumn(ballList);
+        ballList.setItemCount(numBalls);
+        setGuiScrollTarget(ballList);
+    }
+    // *************************************************************************
+    // BasePhysicsApp methods
+
+    /**
+     * Callback invoked by SPORT after the main update loop terminates.
+     */
+    @Override
+    protected void cleanUp() {
+        logger.log(Level.INFO, describe());
+        super.cleanUp();
+    }
+
+    /**
+     * Create the PhysicsSpace. Invoked once during initialization.
+     *
+     * @return a new instance
+     */
+    @Override
+    protected PhysicsSpace createSpace() {
+        int solvers = requestedSolvers;
+        if (solvers <= 0) {
+            solvers = countParallelSolvers();
+        }
+        PhysicsSpace result
+                = newPhysicsSpace(broadphase, worldMin, worldMax, solvers);
+        this.numSolvers = result.countSolvers();
+
+        return result;
+    }
+
+    /**
+     * Callback invoked by SPORT before the main update loop begins.
+     */
+    @Override
+    protected void initialize() {
+        setBackgroundColor(Constants.SKY_BLUE);
+        cam.setLocation(new Vector3f(0f, 6f, 30f));
+
+        super.initialize();
+    }
+
+    /**
+     * Populate the PhysicsSpace. Invoked once during initialization.
+     */
+    @Override
+    protected void populateSpace() {
+        // Add a static horizontal plane.
+        Plane plane = new Plane(Vector3f.UNIT_Y, floorY);
+        CollisionShape planeShape = new PlaneCollisionShape(plane);
+        float mass = PhysicsBody.massForStatic;
+        PhysicsRigidBody floor = new PhysicsRigidBody(planeShape, mass);
+        physicsSpace.addCollisionObject(floor);
+        visualizeShape(floor);
+
+        // Add dynamic balls in layers, all sharing a single shape and mesh.
+        float offset = 0.5f * ballSpacing * (layerSide - 1);
+        Vector3f location = new Vector3f();
+        int perLayer = layerSide * layerSide;
+        mass = 1f;
+        for (int i = 0; i < numBalls; ++i) {
+            int layer = i / perLayer;
+            int row = (i % perLayer) / layerSide;
+            int column = i % layerSide;
+            location.set(ballSpacing * column - offset,
+                    floorY + 1f + ballSpacing * layer,
+                    ballSpacing * row - offset);
+
+            CollisionShape ballShape = shapeCache().sphere(ballRadius);
+            PhysicsRigidBody ball = new PhysicsRigidBody(ballShape, mass);
+            ball.setPhysicsLocation(location);
+            physicsSpace.addCollisionObject(ball);
+            if (instanced) {
+                visualizeInstanced(ball, 0.9f, 0.5f, 0.1f);
+            } else {
+                visualizeShape(ball);
+            }
+        }
+    }
+
+    /**
+     * Callback invoked by SPORT during each iteration of the main update loop.
+     */
+    @Override
+    protected void render() {
+        super.render();
+
+        long nanoTime = System.nanoTime();
+        if (nanoTime - lastStatus >= statusNanos) {
+            this.lastStatus = nanoTime;
+            String text = describe();
+            enqueueGuiTask(() -> statusText.setText(text));
+        }
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Summarize the configuration and the physics step times so far. Doesn't
+     * access the space, which may be stepping on another thread.
+     *
+     * @return a new String
+     */
+    private String describe() {
+        Histogram steps = frameStats().histogram(FramePhase.PHYSICS);
+        String result = String.format(Locale.ROOT,
+                "%d balls, %d solver(s), %s%s%s: step p50=%.2f p99=%.2f"
+                + " max=%.2f ms",
+                numBalls, numSolvers, broadphase,
+                pipelined ? ", pipelined" : "",
+                instanced ? ", instanced" : "",
+                1e-6 * steps.percentile(0.5), 1e-6 * steps.percentile(0.99),
+                1e-6 * steps.max());
+
+        return result;
+    }
+
+    /**
+     * Describe where the indexed ball was dropped.
+     *
+     * @param index the index of the ball (&ge;0)
+     * @return a new String
+     */
+    private static String describeBall(int index) {
+        int perLayer = layerSide * layerSide;
+        String result = String.format(Locale.ROOT,
+                "Ball %d: layer %d, row %d, column %d", index,
+                index / perLayer, (index % perLayer) / layerSide,
+                index % layerSide);
+
+        return result;
+    }
+
+    /**
+     * Restart the simulation and the step-time statistics.
+     */
+    private void restartSimulation() {
+        restoreInitialState();
+        frameStats().reset();
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * A dedicated thread that performs physics steps on behalf of the render
+ * thread, so a step can overlap the GUI draw, the blend, and the buffer swap.
+ * The render thread may touch physics objects only while no step is in
+ * progress.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+final class PhysicsWorker implements Runnable {
+    // *************************************************************************
+    // fields
+
+    /**
+     * true while a step has been requested and not yet joined (accessed only
+     * by the render thread)
+     */
+    private boolean isStepPending;
+    /**
+     * true once the worker has been asked to terminate
+     */
+    private volatile boolean isStopping;
+    /**
+     * duration of the most recent step (in nanoseconds, written by the worker
+     * before releasing {@code doneSignal})
+     */
+    private long stepNanos;
+    /**
+     * whatever the most recent step threw, or null if it completed normally
+     * (written by the worker before releasing {@code doneSignal})
+     */
+    private Throwable failure;
+    /**
+     * performs a single step (any parameters of the step should be written by
+     * the render thread before it invokes {@link #requestStep()})
+     */
+    final private Runnable step;
+    /**
+     * permit released when a step completes
+     */
+    final private Semaphore doneSignal = new Semaphore(0);
+    /**
+     * permit released to start a step
+     */
+    final private Semaphore startSignal = new Semaphore(0);
+    /**
+     * the worker thread
+     */
+    final private Thread thread;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate a worker that performs the specified step. The worker isn't
+     * started.
+     *
+     * @param step the task that performs a step (not null, alias created)
+     */
+    PhysicsWorker(Runnable step) {
+        this.step = step;
+
+        this.thread = new Thread(this, "Physics");
+        thread.setDaemon(true);
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Wait for the requested step (if any) to complete. Invoked on the render
+     * thread.
+     *
+     * @return the duration of the step (in nanoseconds) or -1 if no step was
+     * pending
+     * @throws IllegalStateException if the step threw an exception or error,
+     * which is attached as the cause
+     */
+    long join() {
+        if (!isStepPending) {
+            return -1L;
+        }
+
+        doneSignal.acquireUninterruptibly();
+        this.isStepPending = false;
+
+        Throwable cause = failure;
+        if (cause != null) {
+            this.failure = null;
+            throw new IllegalStateException("A physics step failed.", cause);
+        }
+
+        return stepNanos;
+    }
+
+    /**
+     * Start a step on the worker thread. Invoked on the render thread while
+     * no step is pending.
+     */
+    void requestStep() {
+        assert !isStepPending;
+
+        this.isStepPending = true;
+        startSignal.release();
+    }
+
+    /**
+     * Start the worker thread.
+     */
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Terminate the worker thread, waiting for any step in progress. Invoked
+     * on the render thread.
+     */
+    void stop() {
+        try {
+            join();
+        } finally {
+            this.isStopping = true;
+            startSignal.release();
+            try {
+                thread.join();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    // *************************************************************************
+    // Runnable methods
+
+    /**
+     * Body of the worker thread: wait for a request, then perform a step. A
+     * step that throws is reported to the render thread by {@link #join()},
+     * and the worker keeps serving requests.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            startSignal.acquireUninterruptibly();
+            if (isStopping) {
+                break;
+            }
+
+            long startNanos = System.nanoTime();
+            try {
+                step.run();
+            } catch (Throwable throwable) {
+                this.failure = throwable;
+            } finally {
+                this.stepNanos = System.nanoTime() - startNanos;
+                doneSignal.release();
+            }
+        }
+    }
+}
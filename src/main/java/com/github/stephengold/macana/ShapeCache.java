@@ -0,0 +1,308 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+import com.jme3.bullet.collision.shapes.BoxCollisionShape;
+import com.jme3.bullet.collision.shapes.CapsuleCollisionShape;
+import com.jme3.bullet.collision.shapes.CollisionShape;
+import com.jme3.bullet.collision.shapes.CylinderCollisionShape;
+import com.jme3.bullet.collision.shapes.SphereCollisionShape;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Intern collision shapes by type and parameters, so identical bodies share a
+ * single native shape. Since SPORT caches visual meshes by shape, sharing a
+ * shape also shares its mesh.
+ * <p>
+ * Each acquisition increments a reference count, and each release decrements
+ * it. When the count reaches zero, the shape is evicted and the eviction
+ * listener is notified, so the owner can drop any other references to the
+ * shape and free resources built for it. Not thread-safe.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+final class ShapeCache {
+    // *************************************************************************
+    // constants
+
+    /**
+     * shape types, for keys
+     */
+    final private static int boxType = 0;
+    final private static int capsuleType = 1;
+    final private static int cylinderType = 2;
+    final private static int sphereType = 3;
+    // *************************************************************************
+    // fields
+
+    /**
+     * cached entries, indexed by key
+     */
+    final private Map<Key, Entry> byKey = new HashMap<>();
+    /**
+     * cached entries, indexed by shape
+     */
+    final private Map<CollisionShape, Entry> byShape
+            = new IdentityHashMap<>();
+    /**
+     * notified of each shape evicted by a release
+     */
+    final private Consumer<CollisionShape> evictionListener;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate an empty cache.
+     *
+     * @param evictionListener notified when the last reference to a shape is
+     * released (not null, alias created)
+     */
+    ShapeCache(Consumer<CollisionShape> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Acquire a box shape with the specified half extents.
+     *
+     * @param halfX the half extent on the local X axis (&ge;0)
+     * @param halfY the half extent on the local Y axis (&ge;0)
+     * @param halfZ the half extent on the local Z axis (&ge;0)
+     * @return a shared instance (not null)
+     */
+    BoxCollisionShape box(float halfX, float halfY, float halfZ) {
+        Key key = new Key(boxType, halfX, halfY, halfZ);
+        CollisionShape result = acquire(
+                key, () -> new BoxCollisionShape(halfX, halfY, halfZ));
+
+        return (BoxCollisionShape) result;
+    }
+
+    /**
+     * Acquire a capsule shape with the specified dimensions.
+     *
+     * @param radius the radius (&ge;0)
+     * @param height the height of the cylindrical portion (&ge;0)
+     * @param axis the local axis of the height (0&rarr;X, 1&rarr;Y, 2&rarr;Z)
+     * @return a shared instance (not null)
+     */
+    CapsuleCollisionShape capsule(float radius, float height, int axis) {
+        Key key = new Key(capsuleType, radius, height, axis);
+        CollisionShape result = acquire(
+                key, () -> new CapsuleCollisionShape(radius, height, axis));
+
+        return (CapsuleCollisionShape) result;
+    }
+
+    /**
+     * Evict all shapes, regardless of their reference counts.
+     */
+    void clear() {
+        byKey.clear();
+        byShape.clear();
+    }
+
+    /**
+     * Return the number of distinct shapes in the cache.
+     *
+     * @return the count (&ge;0)
+     */
+    int countShapes() {
+        return byShape.size();
+    }
+
+    /**
+     * Acquire a cylinder shape with the specified dimensions.
+     *
+     * @param radius the radius (&ge;0)
+     * @param height the height (&ge;0)
+     * @param axis the local axis of the height (0&rarr;X, 1&rarr;Y, 2&rarr;Z)
+     * @return a shared instance (not null)
+     */
+    CylinderCollisionShape cylinder(float radius, float height, int axis) {
+        Key key = new Key(cylinderType, radius, height, axis);
+        CollisionShape result = acquire(
+                key, () -> new CylinderCollisionShape(radius, height, axis));
+
+        return (CylinderCollisionShape) result;
+    }
+
+    /**
+     * Return the reference count of the specified shape.
+     *
+     * @param shape the shape to look up (may be null)
+     * @return the count (&ge;0, 0 if not in the cache)
+     */
+    int referenceCount(CollisionShape shape) {
+        Entry entry = byShape.get(shape);
+        int result = (entry == null) ? 0 : entry.references;
+
+        return result;
+    }
+
+    /**
+     * Release one reference to the specified shape. If no references remain,
+     * evict it and notify the eviction listener.
+     *
+     * @param shape the shape to release (may be null)
+     * @return true if the shape was in the cache, otherwise false
+     */
+    boolean release(CollisionShape shape) {
+        Entry entry = byShape.get(shape);
+        if (entry == null) {
+            return false;
+        }
+
+        --entry.references;
+        if (entry.references == 0) {
+            byShape.remove(shape);
+            byKey.remove(entry.key);
+            evictionListener.accept(shape);
+        }
+
+        return true;
+    }
+
+    /**
+     * Acquire a sphere shape with the specified radius.
+     *
+     * @param radius the radius (&ge;0)
+     * @return a shared instance (not null)
+     */
+    SphereCollisionShape sphere(float radius) {
+        Key key = new Key(sphereType, radius, 0f, 0f);
+        CollisionShape result
+                = acquire(key, () -> new SphereCollisionShape(radius));
+
+        return (SphereCollisionShape) result;
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Acquire the shape with the specified key, creating it if necessary.
+     *
+     * @param key the key (not null)
+     * @param factory creates the shape if it isn't cached (not null)
+     * @return the cached shape (not null)
+     */
+    private CollisionShape acquire(
+            Key key, Supplier<CollisionShape> factory) {
+        Entry entry = byKey.get(key);
+        if (entry == null) {
+            CollisionShape shape = factory.get();
+            entry = new Entry(key, shape);
+            byKey.put(key, entry);
+            byShape.put(shape, entry);
+        }
+        ++entry.references;
+
+        return entry.shape;
+    }
+    // *************************************************************************
+    // nested classes
+
+    /**
+     * A cached shape and its reference count.
+     */
+    private static final class Entry {
+        /**
+         * number of outstanding references
+         */
+        int references;
+        /**
+         * key under which the shape is cached
+         */
+        final Key key;
+        /**
+         * the cached shape
+         */
+        final CollisionShape shape;
+
+        Entry(Key key, CollisionShape shape) {
+            this.key = key;
+            this.shape = shape;
+        }
+    }
+
+    /**
+     * Identify a shape by its type and up to 3 parameters.
+     */
+    private static final class Key {
+        /**
+         * parameters of the shape
+         */
+        final float a;
+        final float b;
+        final float c;
+        /**
+         * type of shape
+         */
+        final int type;
+
+        Key(int type, float a, float b, float c) {
+            this.type = type;
+            this.a = a;
+            this.b = b;
+            this.c = c;
+        }
+
+        @Override
+        public boolean equals(Object otherObject) {
+            if (otherObject == this) {
+                return true;
+            } else if (!(otherObject instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) otherObject;
+            boolean result = type == other.type
+                    && Float.compare(a, other.a) == 0
+                    && Float.compare(b, other.b) == 0
+                    && Float.compare(c, other.c) == 0;
+
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = type;
+            result = 31 * result + Float.floatToIntBits(a);
+            result = 31 * result + Float.floatToIntBits(b);
+            result = 31 * result + Float.floatToIntBits(c);
+
+            return result;
+        }
+    }
+}
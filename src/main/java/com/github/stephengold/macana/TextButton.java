@@ -28,6 +28,7 @@
  */
 package com.github.stephengold.macana;
 
+import java.util.Objects;
 import myworld.obsidian.components.Button;
 import myworld.obsidian.components.text.TextDisplay;
 import myworld.obsidian.display.ColorRGBA;
@@ -64,45 +65,66 @@ class TextButton extends Button {
 
         this.textDisplay = new TextDisplay(string, style);
         super.addChildren(textDisplay);
+
+        // Redraw when the skin's hover and focus styles apply or lapse:
+        MacanaApp.invalidateGuiOnChange(hovered());
+        MacanaApp.invalidateGuiOnChange(focused());
+        MacanaApp.invalidateGuiOnChange(textDisplay.hovered());
     }
     // *************************************************************************
     // new methods exposed
 
     /**
-     * Alter the font family of the displayed text.
+     * Alter the font family of the displayed text. If the family is
+     * unchanged, the text isn't re-shaped and the GUI isn't invalidated.
      *
-     * @param size the name of the desired font family
+     * @param name the name of the desired font family
      * @return the (modified) button (for chaining)
      */
     TextButton setFontFamily(String name) {
         ValueProperty<String> property = textDisplay.fontFamily();
+        if (Objects.equals(property.get(), name)) {
+            return this;
+        }
         property.set(name);
+        MacanaApp.invalidateGui();
 
         return this;
     }
 
     /**
-     * Alter the font size of the displayed text.
+     * Alter the font size of the displayed text. If the size is unchanged,
+     * the text isn't re-shaped and the GUI isn't invalidated.
      *
      * @param size the desired size
      * @return the (modified) button (for chaining)
      */
     TextButton setFontSize(float size) {
         ValueProperty<Float> property = textDisplay.fontSize();
+        Float oldSize = property.get();
+        if (oldSize != null && oldSize == size) {
+            return this;
+        }
         property.set(size);
+        MacanaApp.invalidateGui();
 
         return this;
     }
 
     /**
-     * Alter the font style of the displayed text.
+     * Alter the font style of the displayed text. If the style is unchanged,
+     * the text isn't re-shaped and the GUI isn't invalidated.
      *
      * @param style the desired style
      * @return the (modified) button (for chaining)
      */
     TextButton setFontStyle(TextStyle style) {
         ValueProperty<TextStyle> property = textDisplay.fontStyle();
+        if (Objects.equals(property.get(), style)) {
+            return this;
+        }
         property.set(style);
+        MacanaApp.invalidateGui();
 
         return this;
     }
@@ -117,19 +139,26 @@ class TextButton extends Button {
         ComponentLayout textLayout = textDisplay.layout();
         ValueProperty<Offsets> property = textLayout.margin();
         property.set(offsets);
+        MacanaApp.invalidateGui();
 
         return this;
     }
 
     /**
-     * Alter the displayed text.
+     * Alter the displayed text. If the text is unchanged, no String is
+     * created and the GUI isn't invalidated.
      *
-     * @param text the text to display
+     * @param text the text to display (not null, unaffected)
      * @return the (modified) button (for chaining)
      */
-    TextButton setText(String text) {
+    TextButton setText(CharSequence text) {
         ValueProperty<String> property = textDisplay.text();
-        property.set(text);
+        String oldText = property.get();
+        if (oldText != null && oldText.contentEquals(text)) {
+            return this;
+        }
+        property.set(text.toString());
+        MacanaApp.invalidateGui();
 
         return this;
     }
@@ -143,6 +172,7 @@ class TextButton extends Button {
     TextButton setTextColor(ColorRGBA color) {
         ValueProperty<ColorRGBA> property = textDisplay.color();
         property.set(color);
+        MacanaApp.invalidateGui();
 
         return this;
     }
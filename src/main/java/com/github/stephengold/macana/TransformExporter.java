@@ -0,0 +1,168 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.objects.PhysicsRigidBody;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import org.lwjgl.BufferUtils;
+
+/**
+ * Export the transforms of all rigid bodies in a PhysicsSpace into a single
+ * direct FloatBuffer (7 floats per body: location x, y, z, then rotation x, y,
+ * z, w), for renderers, recorders, and network replicators. After warm-up,
+ * exporting allocates nothing per body.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+final class TransformExporter {
+    // *************************************************************************
+    // constants
+
+    /**
+     * number of floats per body
+     */
+    final static int stride = 7;
+    // *************************************************************************
+    // fields
+
+    /**
+     * direct buffer that receives the transforms
+     */
+    private FloatBuffer buffer = BufferUtils.createFloatBuffer(64 * stride);
+    /**
+     * number of bodies in the most recent export
+     */
+    private int count;
+    /**
+     * bodies in the most recent export, in buffer order
+     */
+    private PhysicsRigidBody[] bodies = new PhysicsRigidBody[64];
+    /**
+     * temporary storage for rotations
+     */
+    final private Quaternion tmpRotation = new Quaternion();
+    /**
+     * temporary storage for locations
+     */
+    final private Vector3f tmpLocation = new Vector3f();
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate an exporter with a small initial capacity.
+     */
+    TransformExporter() {
+        // do nothing
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Access the indexed body from the most recent export.
+     *
+     * @param index the index of the body in the buffer (&ge;0, &lt;count)
+     * @return the pre-existing body (not null)
+     */
+    PhysicsRigidBody body(int index) {
+        assert index >= 0 && index < count : index;
+        return bodies[index];
+    }
+
+    /**
+     * Return the number of bodies in the most recent export.
+     *
+     * @return the count (&ge;0)
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * Write the current transform of every rigid body in the specified space
+     * into the buffer. Must not be invoked while the space is being stepped.
+     *
+     * @param space the space to export (not null, unaffected)
+     * @return the internal buffer, with position=0 and limit=7*count (valid
+     * until the next export)
+     */
+    FloatBuffer export(PhysicsSpace space) {
+        Collection<PhysicsRigidBody> rigidBodies = space.getRigidBodyList();
+        int numBodies = rigidBodies.size();
+        if (bodies.length < numBodies) {
+            int newLength = Math.max(numBodies, 2 * bodies.length);
+            this.bodies = Arrays.copyOf(bodies, newLength);
+            this.buffer = BufferUtils.createFloatBuffer(newLength * stride);
+        }
+
+        buffer.clear(); // so absolute puts may use the full capacity
+        int index = 0;
+        for (PhysicsRigidBody body : rigidBodies) {
+            put(body, buffer, index * stride, tmpLocation, tmpRotation);
+            bodies[index] = body;
+            ++index;
+        }
+        if (index < count) {
+            Arrays.fill(bodies, index, count, null); // release stale references
+        }
+        this.count = index;
+
+        buffer.limit(index * stride);
+
+        return buffer;
+    }
+
+    /**
+     * Write the transform of the specified body into a FloatBuffer, without
+     * altering its position.
+     *
+     * @param body the body to read (not null, unaffected)
+     * @param destination the buffer to write (not null, modified)
+     * @param offset the index of the first float to write
+     * @param tmpLocation temporary storage (not null, modified)
+     * @param tmpRotation temporary storage (not null, modified)
+     */
+    static void put(PhysicsRigidBody body, FloatBuffer destination, int offset,
+            Vector3f tmpLocation, Quaternion tmpRotation) {
+        body.getPhysicsLocation(tmpLocation);
+        body.getPhysicsRotation(tmpRotation);
+
+        destination.put(offset, tmpLocation.x);
+        destination.put(offset + 1, tmpLocation.y);
+        destination.put(offset + 2, tmpLocation.z);
+        destination.put(offset + 3, tmpRotation.getX());
+        destination.put(offset + 4, tmpRotation.getY());
+        destination.put(offset + 5, tmpRotation.getZ());
+        destination.put(offset + 6, tmpRotation.getW());
+    }
+}
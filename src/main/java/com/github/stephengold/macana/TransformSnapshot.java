@@ -0,0 +1,335 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+import com.jme3.bullet.objects.PhysicsRigidBody;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rigid-body transforms captured after physics steps, stored in primitive
+ * arrays (7 floats per body: location x, y, z, then rotation x, y, z, w).
+ * <p>
+ * The 2 most recent steps are readable (current and previous), so
+ * transforms can be interpolated between them. 2 more buffers receive the
+ * captures of the next batch of steps, which may be written on a physics
+ * thread while the readable ones are read on the render thread.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+final class TransformSnapshot {
+    // *************************************************************************
+    // constants
+
+    /**
+     * number of floats per body
+     */
+    final static int stride = TransformExporter.stride;
+    // *************************************************************************
+    // fields
+
+    /**
+     * true if the pending buffers have been written since the most recent
+     * {@link #publish()}
+     */
+    private boolean hasPending;
+    /**
+     * true if the pending-previous buffer has been written since the most
+     * recent {@link #publish()}
+     */
+    private boolean hasPendingPrevious;
+    /**
+     * number of bodies in each buffer: [0] for current, [1] for previous, [2]
+     * for pending, [3] for pending previous
+     */
+    final private int[] counts = new int[4];
+    /**
+     * transform data of each buffer, indexed as for {@code counts}
+     */
+    final private float[][] transforms = new float[4][];
+    /**
+     * native IDs of the bodies in each buffer, indexed as for {@code counts}
+     */
+    final private long[][] ids = new long[4][];
+    /**
+     * temporary storage for captured transforms (used only by
+     * {@link #capture(java.util.List, boolean)})
+     */
+    final private Quaternion tmpRotation = new Quaternion();
+    final private Vector3f tmpLocation = new Vector3f();
+    /**
+     * temporary storage for the current rotation during interpolation (used
+     * only by {@link #rotation(int, float, com.jme3.math.Quaternion)})
+     */
+    final private Quaternion tmpCurrent = new Quaternion();
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate an empty snapshot.
+     */
+    TransformSnapshot() {
+        for (int i = 0; i < 4; ++i) {
+            transforms[i] = new float[16 * stride];
+            ids[i] = new long[16];
+        }
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Return the native ID of the indexed body in the current capture.
+     *
+     * @param index the index of the body (&ge;0, &lt;count)
+     * @return the ID
+     */
+    long bodyId(int index) {
+        assert index >= 0 && index < counts[0] : index;
+        return ids[0][index];
+    }
+
+    /**
+     * Capture the transforms of the specified bodies, in order, into a
+     * pending buffer. May be invoked on a physics thread, provided the list
+     * isn't modified concurrently.
+     *
+     * @param bodies the bodies to capture (not null, unaffected)
+     * @param asPrevious true to capture the step before the last one in a
+     * batch, false to capture the last step
+     */
+    void capture(List<PhysicsRigidBody> bodies, boolean asPrevious) {
+        int buffer = asPrevious ? 3 : 2;
+        int count = bodies.size();
+        if (ids[buffer].length < count) {
+            int newLength = Math.max(count, 2 * ids[buffer].length);
+            ids[buffer] = Arrays.copyOf(ids[buffer], newLength);
+            transforms[buffer]
+                    = Arrays.copyOf(transforms[buffer], newLength * stride);
+        }
+
+        float[] data = transforms[buffer];
+        long[] bodyIds = ids[buffer];
+        for (int index = 0; index < count; ++index) {
+            PhysicsRigidBody body = bodies.get(index);
+            body.getPhysicsLocation(tmpLocation);
+            body.getPhysicsRotation(tmpRotation);
+
+            int offset = index * stride;
+            data[offset] = tmpLocation.x;
+            data[offset + 1] = tmpLocation.y;
+            data[offset + 2] = tmpLocation.z;
+            data[offset + 3] = tmpRotation.getX();
+            data[offset + 4] = tmpRotation.getY();
+            data[offset + 5] = tmpRotation.getZ();
+            data[offset + 6] = tmpRotation.getW();
+            bodyIds[index] = body.nativeId();
+        }
+        counts[buffer] = count;
+        if (asPrevious) {
+            this.hasPendingPrevious = true;
+        } else {
+            this.hasPending = true;
+        }
+    }
+
+    /**
+     * Return the number of bodies in the current capture.
+     *
+     * @return the count (&ge;0)
+     */
+    int count() {
+        return counts[0];
+    }
+
+    /**
+     * Access the transform data of the current capture. Valid until the next
+     * {@link #publish()}.
+     *
+     * @return the pre-existing array (7 floats per body, not null)
+     */
+    float[] currentTransforms() {
+        return transforms[0];
+    }
+
+    /**
+     * Interpolate the location of the indexed body between the previous and
+     * current captures.
+     *
+     * @param index the index of the body in the current capture (&ge;0,
+     * &lt;count)
+     * @param alpha the interpolation fraction (0 &rarr; previous, 1 &rarr;
+     * current)
+     * @param storeResult storage for the result (not null, modified)
+     * @return {@code storeResult}
+     */
+    Vector3f location(int index, float alpha, Vector3f storeResult) {
+        assert index >= 0 && index < counts[0] : index;
+
+        int offset = index * stride;
+        float[] current = transforms[0];
+        storeResult.set(current[offset], current[offset + 1],
+                current[offset + 2]);
+        if (alpha < 1f && hasPrevious(index)) {
+            float[] previous = transforms[1];
+            storeResult.set(
+                    previous[offset] + alpha
+                    * (current[offset] - previous[offset]),
+                    previous[offset + 1] + alpha
+                    * (current[offset + 1] - previous[offset + 1]),
+                    previous[offset + 2] + alpha
+                    * (current[offset + 2] - previous[offset + 2]));
+        }
+
+        return storeResult;
+    }
+
+    /**
+     * Make the pending captures readable. If the batch captured only its last
+     * step, the current capture becomes previous. Has no effect if nothing
+     * was captured since the previous publish. Invoked on the render thread
+     * while no capture is in progress.
+     */
+    void publish() {
+        if (!hasPending) {
+            return;
+        }
+
+        if (hasPendingPrevious) {
+            swap(counts, 0, 2);
+            swap(counts, 1, 3);
+            swap(transforms, 0, 2);
+            swap(transforms, 1, 3);
+            swap(ids, 0, 2);
+            swap(ids, 1, 3);
+        } else {
+            rotate(counts);
+            rotate(transforms);
+            rotate(ids);
+        }
+        this.hasPending = false;
+        this.hasPendingPrevious = false;
+    }
+
+    /**
+     * Interpolate the rotation of the indexed body between the previous and
+     * current captures.
+     *
+     * @param index the index of the body in the current capture (&ge;0,
+     * &lt;count)
+     * @param alpha the interpolation fraction (0 &rarr; previous, 1 &rarr;
+     * current)
+     * @param storeResult storage for the result (not null, modified)
+     * @return {@code storeResult}
+     */
+    Quaternion rotation(int index, float alpha, Quaternion storeResult) {
+        assert index >= 0 && index < counts[0] : index;
+
+        int offset = index * stride + 3;
+        float[] current = transforms[0];
+        storeResult.set(current[offset], current[offset + 1],
+                current[offset + 2], current[offset + 3]);
+        if (alpha < 1f && hasPrevious(index)) {
+            tmpCurrent.set(storeResult);
+            float[] previous = transforms[1];
+            storeResult.set(previous[offset], previous[offset + 1],
+                    previous[offset + 2], previous[offset + 3]);
+            storeResult.slerp(tmpCurrent, alpha);
+        }
+
+        return storeResult;
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Test whether the previous capture contains the indexed body at the same
+     * index.
+     *
+     * @param index the index of the body in the current capture
+     * @return true if it does, otherwise false
+     */
+    private boolean hasPrevious(int index) {
+        boolean result = index < counts[1] && ids[1][index] == ids[0][index];
+        return result;
+    }
+
+    /**
+     * Rotate the first 3 elements of an array: pending &rarr; current
+     * &rarr; previous &rarr; pending.
+     *
+     * @param array the array to modify (not null, length&ge;3)
+     */
+    private static void rotate(int[] array) {
+        int oldPrevious = array[1];
+        array[1] = array[0];
+        array[0] = array[2];
+        array[2] = oldPrevious;
+    }
+
+    /**
+     * Rotate the first 3 elements of an array: pending &rarr; current
+     * &rarr; previous &rarr; pending.
+     *
+     * @param array the array to modify (not null, length&ge;3)
+     */
+    private static <E> void rotate(E[] array) {
+        E oldPrevious = array[1];
+        array[1] = array[0];
+        array[0] = array[2];
+        array[2] = oldPrevious;
+    }
+
+    /**
+     * Swap 2 elements of an array.
+     *
+     * @param array the array to modify (not null)
+     * @param i the index of the first element
+     * @param j the index of the second element
+     */
+    private static void swap(int[] array, int i, int j) {
+        int old = array[i];
+        array[i] = array[j];
+        array[j] = old;
+    }
+
+    /**
+     * Swap 2 elements of an array.
+     *
+     * @param array the array to modify (not null)
+     * @param i the index of the first element
+     * @param j the index of the second element
+     */
+    private static <E> void swap(E[] array, int i, int j) {
+        E old = array[i];
+        array[i] = array[j];
+        array[j] = old;
+    }
+}
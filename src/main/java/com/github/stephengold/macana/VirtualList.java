@@ -0,0 +1,234 @@
+/*
+ Copyright (c) 2024 Stephen Gold
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+    list of conditions and the following disclaimer.
+
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+    this list of conditions and the following disclaimer in the documentation
+    and/or other materials provided with the distribution.
+
+ 3. Neither the name of the copyright holder nor the names of its
+    contributors may be used to endorse or promote products derived from
+    this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.stephengold.macana;
+
+import myworld.obsidian.display.skin.StyleClass;
+import myworld.obsidian.scene.Component;
+import myworld.obsidian.scene.layout.Column;
+
+/**
+ * A Column that presents a long list of items using a fixed pool of
+ * TextButtons, one per visible row. Only the visible rows exist as
+ * components, so the cost of layout, styling, and drawing depends on the
+ * number of visible rows, not on the number of items. Scrolling rebinds the
+ * pooled buttons to different items.
+ * <p>
+ * Add the list to a SimpleLayout using {@code addToColumn()}, and route
+ * vertical scroll-wheel input over it using
+ * {@code MacanaApp.setGuiScrollTarget()}. Scrolling is by whole rows, so
+ * no row is ever partly visible and no overscan rows are needed. The list
+ * is modified on whichever thread updates the GUI.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+class VirtualList extends Column {
+    // *************************************************************************
+    // constants
+
+    /**
+     * number of rows to scroll per notch of the scroll wheel
+     */
+    final private static float rowsPerNotch = 3f;
+    // *************************************************************************
+    // fields
+
+    /**
+     * scrolling accumulated but not yet applied (in rows, between -1 and +1)
+     */
+    private float pendingRows;
+    /**
+     * index of the item in the first visible row
+     */
+    private int firstIndex;
+    /**
+     * number of items in the list
+     */
+    private int itemCount;
+    /**
+     * binds items to rows
+     */
+    final private RowBinder binder;
+    /**
+     * pooled buttons, one per visible row, top to bottom
+     */
+    final private TextButton[] rows;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate an empty list with the specified number of visible rows.
+     *
+     * @param numVisibleRows the number of rows to display (&gt;0)
+     * @param style style information for the row buttons (may be null)
+     * @param binder to bind items to rows (not null, alias created)
+     */
+    VirtualList(int numVisibleRows, StyleClass style, RowBinder binder) {
+        if (numVisibleRows <= 0) {
+            throw new IllegalArgumentException(
+                    "numVisibleRows = " + numVisibleRows);
+        }
+
+        this.binder = binder;
+        this.rows = new TextButton[numVisibleRows];
+        for (int i = 0; i < numVisibleRows; ++i) {
+            TextButton row = new TextButton("", style);
+            rows[i] = row;
+            addChild(row);
+        }
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Configure a pooled button to display an item.
+     */
+    interface RowBinder {
+        /**
+         * Update the specified button to display the indexed item. Invoked
+         * whenever a row is scrolled to a different item or refreshed.
+         *
+         * @param button the button of the row (not null)
+         * @param itemIndex the index of the item (&ge;0)
+         */
+        void bind(TextButton button, int itemIndex);
+    }
+
+    /**
+     * Return the index of the item in the first visible row.
+     *
+     * @return the index (&ge;0)
+     */
+    int firstIndex() {
+        return firstIndex;
+    }
+
+    /**
+     * Return the number of items in the list.
+     *
+     * @return the count (&ge;0)
+     */
+    int itemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Test whether the cursor lies within the list's laid-out bounds,
+     * according to Obsidian's hover state for the list and its rows.
+     *
+     * @return true if it does, otherwise false
+     */
+    boolean isUnderCursor() {
+        if (isHovered(this)) {
+            return true;
+        }
+        for (TextButton row : rows) {
+            if (isHovered(row) || isHovered(row.textDisplay())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Rebind all visible rows, for instance after the items have changed.
+     */
+    void refresh() {
+        for (int rowIndex = 0; rowIndex < rows.length; ++rowIndex) {
+            int itemIndex = firstIndex + rowIndex;
+            if (itemIndex < itemCount) {
+                binder.bind(rows[rowIndex], itemIndex);
+            } else {
+                rows[rowIndex].setText("");
+            }
+        }
+    }
+
+    /**
+     * Scroll in response to the scroll wheel.
+     *
+     * @param notches the vertical scroll amount (positive to scroll toward
+     * the start of the list)
+     */
+    void scroll(float notches) {
+        pendingRows -= notches * rowsPerNotch;
+        int wholeRows = (int) pendingRows;
+        if (wholeRows != 0) {
+            pendingRows -= wholeRows;
+            scrollTo(firstIndex + wholeRows);
+        }
+    }
+
+    /**
+     * Scroll so the indexed item is in the first visible row, or as close as
+     * possible.
+     *
+     * @param itemIndex the index of the desired item
+     */
+    void scrollTo(int itemIndex) {
+        int maxFirst = Math.max(0, itemCount - rows.length);
+        int newFirst = Math.max(0, Math.min(itemIndex, maxFirst));
+        if (newFirst != firstIndex) {
+            this.firstIndex = newFirst;
+            refresh();
+        }
+    }
+
+    /**
+     * Alter the number of items in the list, scrolling if necessary, and
+     * rebind all visible rows.
+     *
+     * @param count the desired number of items (&ge;0)
+     */
+    void setItemCount(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count = " + count);
+        }
+
+        this.itemCount = count;
+        int maxFirst = Math.max(0, count - rows.length);
+        this.firstIndex = Math.min(firstIndex, maxFirst);
+        refresh();
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Test whether Obsidian considers the specified component hovered.
+     *
+     * @param component the component to test (not null, unaffected)
+     * @return true if hovered, otherwise false
+     */
+    private static boolean isHovered(Component component) {
+        Boolean hovered = component.hovered().get();
+        boolean result = Boolean.TRUE.equals(hovered);
+
+        return result;
+    }
+}
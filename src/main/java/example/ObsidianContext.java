@@ -5,8 +5,16 @@ import myworld.obsidian.display.DisplayEngine;
 import myworld.obsidian.display.GLSurfaceManager;
 import myworld.obsidian.geometry.Dimension2D;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+
 import static org.lwjgl.glfw.GLFW.*;
 import static org.lwjgl.opengl.GL32C.*;
+import static org.lwjgl.opengl.GL33C.GL_TIME_ELAPSED;
+import static org.lwjgl.opengl.GL33C.glGetQueryObjecti64;
 
 /**
  * Manages a dedicated OpenGL context ;&amp; rendering target for Obsidian
@@ -15,6 +23,91 @@ import static org.lwjgl.opengl.GL32C.*;
  */
 public class ObsidianContext {
 
+    /**
+     * Render buffers are allocated in multiples of this many pixels, so small
+     * size changes can reuse the existing buffer.
+     */
+    protected static final int RENDER_BUFFER_GRANULARITY = 256;
+
+    /**
+     * Maximum number of sample targets in the ring.
+     */
+    public static final int MAX_BUFFER_COUNT = 3;
+
+    /**
+     * Number of frames of GPU timer queries that may be in flight at once.
+     */
+    protected static final int TIMER_QUERY_FRAMES = 4;
+
+    /**
+     * Receives the duration of each render, split into the Skija draw and the
+     * MSAA resolve (blit). All callbacks occur on the thread that invokes
+     * render().
+     */
+    public interface TimingListener {
+        /**
+         * CPU time spent issuing commands for a render.
+         *
+         * @param drawNanos nanoseconds spent in ObsidianUI.render()
+         * @param blitNanos nanoseconds spent resolving into the sample texture
+         */
+        void cpuTimes(long drawNanos, long blitNanos);
+
+        /**
+         * GPU time spent executing a render, reported a few frames late.
+         *
+         * @param drawNanos nanoseconds the GPU spent on the draw
+         * @param blitNanos nanoseconds the GPU spent on the resolve
+         */
+        void gpuTimes(long drawNanos, long blitNanos);
+    }
+
+    /**
+     * A resolved-color texture, the framebuffer that targets it, and the
+     * fences that order access to it between the two contexts.
+     */
+    protected static class SampleTarget {
+        protected final int width;
+        protected final int height;
+        protected int fbo;
+        protected int tex;
+        // signaled when the OSR context has finished writing the texture
+        protected long writeFence;
+        // signaled when the application context has finished sampling the texture
+        protected long readFence;
+
+        // region (in GL window coordinates) changed since this target was last written
+        protected boolean missedAll = true;
+        protected int missedX0, missedY0, missedX1, missedY1;
+
+        protected SampleTarget(int width, int height){
+            this.width = width;
+            this.height = height;
+        }
+
+        protected void addMissed(int x0, int y0, int x1, int y1){
+            if(missedAll){
+                return;
+            }
+            if(missedX1 <= missedX0 || missedY1 <= missedY0){
+                missedX0 = x0;
+                missedY0 = y0;
+                missedX1 = x1;
+                missedY1 = y1;
+            }else{
+                missedX0 = Math.min(missedX0, x0);
+                missedY0 = Math.min(missedY0, y0);
+                missedX1 = Math.max(missedX1, x1);
+                missedY1 = Math.max(missedY1, y1);
+            }
+        }
+
+        protected void clearMissed(){
+            missedAll = false;
+            missedX0 = missedY0 = missedX1 = missedY1 = 0;
+        }
+    }
+
     protected final ObsidianUI ui;
     protected Dimension2D size;
     protected int msaa;
@@ -22,13 +115,59 @@ public class ObsidianContext {
     protected long osr;
     protected int renderFBO;
     protected int renderColorBuf;
-    protected int sampleFBO;
-    protected int sampleTex;
+    protected int renderBufWidth;
+    protected int renderBufHeight;
+    protected int bufferCount = 1;
+    protected SampleTarget[] ring = new SampleTarget[0];
+    // ring indices of the most recently written target and the one before it, or -1
+    protected int latest = -1;
+    protected int previous = -1;
+    protected int displayed;
+    protected boolean renderedSinceAcquire;
+    protected final List<SampleTarget> samplePool = new ArrayList<>();
+
+    protected final int[] savedScissorBox = new int[4];
+
+    protected TimingListener timingListener;
+    // query names for the draw and blit of each in-flight frame, or null if timer queries are unsupported
+    protected int[] drawQueries;
+    protected int[] blitQueries;
+    protected int queryHead;
+    protected int queryTail;
 
     public ObsidianContext(ObsidianUI ui) {
         this.ui = ui;
     }
 
+    /**
+     * Sets the number of sample textures to cycle through. With more than one,
+     * the texture returned by {@link #acquireTexture()} is the one completed
+     * during the previous frame, so the application can sample it while the
+     * OSR context renders into the next one. Must be invoked before init().
+     *
+     * @param count the desired number of textures (&ge;1, &le;3, default=1)
+     */
+    public void setBufferCount(int count){
+        if(count < 1 || count > MAX_BUFFER_COUNT){
+            throw new IllegalArgumentException("count = " + count);
+        }
+        if(osr != 0){
+            throw new IllegalStateException("Already initialized");
+        }
+        this.bufferCount = count;
+    }
+
+    /**
+     * Sets the listener that receives render timings. GPU timings are reported
+     * only if the driver supports timer queries (OpenGL 3.3 or
+     * ARB_timer_query).
+     *
+     * @param listener the listener to notify, or null for none
+     */
+    public void setTimingListener(TimingListener listener){
+        this.timingListener = listener;
+    }
+
     public void init(Dimension2D size, int msaa, long windowHandle) {
         this.msaa = msaa;
         this.size = size;
@@ -50,6 +189,7 @@ public class ObsidianContext {
         // We're not going to use this window's framebuffer, so make it small
         osr = glfwCreateWindow(1, 1, "Obsidian OSR", 0, windowHandle);
         createRenderSurface();
+        createTimerQueries();
     }
 
     public void resize(Dimension2D size){
@@ -61,71 +201,187 @@ public class ObsidianContext {
         createRenderSurface();
     }
 
+    /**
+     * Returns the most recently rendered texture.
+     */
     public int getTextureHandle(){
-        return sampleTex;
+        return ring[Math.max(latest, 0)].tex;
     }
 
-    public void render(){
-        inContext(() -> {
+    /**
+     * Selects the texture to blend during the current frame and makes the
+     * application context wait (on the GPU, not the CPU) until the OSR context
+     * has finished writing it. Must be invoked with the application context
+     * current, and followed by {@link #releaseTexture()} once the texture has
+     * been drawn.
+     *
+     * @return the name of the texture to blend
+     */
+    public int acquireTexture(){
+        int index = latest;
+        if(ring.length > 1 && renderedSinceAcquire && previous >= 0){
+            // Blend the texture completed during an earlier frame
+            index = previous;
+        }
+        displayed = Math.max(index, 0);
+        renderedSinceAcquire = false;
 
-            glBindFramebuffer(GL_FRAMEBUFFER, renderFBO);
-            glClear(GL_COLOR_BUFFER_BIT);
+        SampleTarget target = ring[displayed];
+        if(target.writeFence != 0){
+            glWaitSync(target.writeFence, 0, GL_TIMEOUT_IGNORED);
+        }
 
-            ui.render();
+        return target.tex;
+    }
 
-            glBindFramebuffer(GL_READ_FRAMEBUFFER, renderFBO);
-            glBindFramebuffer(GL_DRAW_FRAMEBUFFER, sampleFBO);
-            glBlitFramebuffer(
-                    0, 0, getWidth(), getHeight(),
-                    0, 0, getWidth(), getHeight(),
-                    GL_COLOR_BUFFER_BIT,
-                    GL_LINEAR);
-            glBindFramebuffer(GL_FRAMEBUFFER, 0);
-        });
+    /**
+     * Signals that the application context has issued all its commands that
+     * sample the texture returned by {@link #acquireTexture()}. Must be invoked
+     * with the application context current.
+     */
+    public void releaseTexture(){
+        SampleTarget target = ring[displayed];
+        if(target.readFence != 0){
+            glDeleteSync(target.readFence);
+        }
+        target.readFence = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        // Make the fence visible to the OSR context
+        glFlush();
+    }
+
+    public void render(){
+        renderRegion(0, 0, getWidth(), getHeight());
+    }
+
+    /**
+     * Renders the UI, but clears and resolves only the specified region.
+     * Pixels of the render buffer outside the region may be left in an
+     * undefined state, but the corresponding pixels of the sample texture
+     * keep their previous contents, so the region must cover everything that
+     * changed since the previous render.
+     *
+     * @param x the left edge of the region, in UI pixels
+     * @param y the top edge of the region, in UI pixels (measured downward)
+     * @param width the width of the region, in pixels
+     * @param height the height of the region, in pixels
+     */
+    public void render(int x, int y, int width, int height){
+        int x0 = Math.max(0, x);
+        int x1 = Math.min(getWidth(), x + width);
+        // OpenGL window coordinates are measured upward from the bottom edge
+        int y0 = Math.max(0, getHeight() - (y + height));
+        int y1 = Math.min(getHeight(), getHeight() - y);
+        if(x1 <= x0 || y1 <= y0){
+            return;
+        }
+
+        renderRegion(x0, y0, x1, y1);
     }
 
     public void close(){
         cleanRenderSurface();
+        cleanTimerQueries();
         glfwDestroyWindow(osr);
     }
 
-    protected void createRenderSurface(){
+    /**
+     * Query objects aren't shared between contexts, so these are created in
+     * (and may only be used with) the OSR context.
+     */
+    protected void createTimerQueries(){
+        GLCapabilities caps = GL.getCapabilities();
+        if(!caps.OpenGL33 && !caps.GL_ARB_timer_query){
+            return;
+        }
+
         inContext(() -> {
+            drawQueries = new int[TIMER_QUERY_FRAMES];
+            blitQueries = new int[TIMER_QUERY_FRAMES];
+            glGenQueries(drawQueries);
+            glGenQueries(blitQueries);
+        });
+    }
 
-            cleanRenderSurface();
+    /**
+     * Reports any completed timer queries, without blocking, then checks
+     * whether a query slot is free for the upcoming render. Must be invoked
+     * with the OSR context current.
+     *
+     * @return true if the upcoming render should be timed, otherwise false
+     */
+    protected boolean beginTimerQueries(){
+        if(drawQueries == null){
+            return false;
+        }
 
-            // Create render buffer target
-            renderColorBuf = glGenRenderbuffers();
-            glBindRenderbuffer(GL_RENDERBUFFER, renderColorBuf);
-            glRenderbufferStorageMultisample(GL_RENDERBUFFER, msaa, GL_RGBA8, getWidth(), getHeight());
-            glBindRenderbuffer(GL_RENDERBUFFER, 0);
+        while(queryTail != queryHead){
+            // The blit is issued after the draw, so it completes last
+            int blitQuery = blitQueries[queryTail];
+            if(glGetQueryObjecti(blitQuery, GL_QUERY_RESULT_AVAILABLE) == GL_FALSE){
+                break;
+            }
+            long drawNanos = glGetQueryObjecti64(drawQueries[queryTail], GL_QUERY_RESULT);
+            long blitNanos = glGetQueryObjecti64(blitQuery, GL_QUERY_RESULT);
+            timingListener.gpuTimes(drawNanos, blitNanos);
+            queryTail = (queryTail + 1) % TIMER_QUERY_FRAMES;
+        }
 
-            renderFBO = glGenFramebuffers();
-            glBindFramebuffer(GL_FRAMEBUFFER, renderFBO);
-            glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_RENDERBUFFER, renderColorBuf);
+        // Skip timing this render rather than stall on a full ring
+        return (queryHead + 1) % TIMER_QUERY_FRAMES != queryTail;
+    }
 
-            verifyFBO("OSR render buffer");
+    protected void cleanTimerQueries(){
+        if(drawQueries == null){
+            return;
+        }
 
-            glBindFramebuffer(GL_FRAMEBUFFER, 0);
+        inContext(() -> {
+            glDeleteQueries(drawQueries);
+            glDeleteQueries(blitQueries);
+        });
+        drawQueries = null;
+        blitQueries = null;
+        queryHead = 0;
+        queryTail = 0;
+    }
+
+    protected void createRenderSurface(){
+        inContext(() -> {
+
+            if(!renderBufferFits()){
+                cleanRenderBuffer();
 
-            // Create sample buffer target
-            sampleTex = glGenTextures();
-            glBindTexture(GL_TEXTURE_2D, sampleTex);
-            glTexImage2D(GL_TEXTURE_2D, 0, GL_SRGB_ALPHA, getWidth(), getHeight(), 0, GL_RGBA, GL_UNSIGNED_BYTE, 0);
-            /*
-             * The initial setting of GL_TEXTURE_MIN_FILTER is
-             * GL_NEAREST_MIPMAP_LINEAR, for which SPORT would require mipmaps.
-             */
-            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
-            glBindTexture(GL_TEXTURE_2D, 0);
+                // Round up, so that small size changes can reuse this buffer
+                renderBufWidth = roundUp(getWidth());
+                renderBufHeight = roundUp(getHeight());
 
-            sampleFBO = glGenFramebuffers();
-            glBindFramebuffer(GL_FRAMEBUFFER, sampleFBO);
-            glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, sampleTex, 0);
+                // Create render buffer target
+                renderColorBuf = glGenRenderbuffers();
+                glBindRenderbuffer(GL_RENDERBUFFER, renderColorBuf);
+                glRenderbufferStorageMultisample(GL_RENDERBUFFER, msaa, GL_RGBA8, renderBufWidth, renderBufHeight);
+                glBindRenderbuffer(GL_RENDERBUFFER, 0);
 
-            verifyFBO("OSR sample buffer");
+                renderFBO = glGenFramebuffers();
+                glBindFramebuffer(GL_FRAMEBUFFER, renderFBO);
+                glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_RENDERBUFFER, renderColorBuf);
 
-            glBindFramebuffer(GL_FRAMEBUFFER, 0);
+                verifyFBO("OSR render buffer");
+
+                glBindFramebuffer(GL_FRAMEBUFFER, 0);
+            }
+
+            // Sample textures are blended over the whole window, so their size must match exactly
+            if(ring.length != bufferCount || ring[0].width != getWidth() || ring[0].height != getHeight()){
+                releaseSampleTargets();
+                ring = new SampleTarget[bufferCount];
+                for(int i = 0; i < bufferCount; ++i){
+                    ring[i] = acquireSampleTarget(getWidth(), getHeight());
+                }
+                latest = -1;
+                previous = -1;
+                displayed = 0;
+                renderedSinceAcquire = false;
+            }
 
             if(ui.getDisplay() != null){
                 var surfaceManager = (GLSurfaceManager) ui.getDisplay().getSurfaceManager();
@@ -142,31 +398,231 @@ public class ObsidianContext {
         });
     }
 
-    protected void cleanRenderSurface(){
+    /**
+     * Renders the UI into the next sample target in the ring, resolving the
+     * specified region plus whatever that target missed while other targets
+     * were being rendered.
+     */
+    protected void renderRegion(int x0, int y0, int x1, int y1){
+        int index = (latest + 1) % ring.length;
+        SampleTarget target = ring[index];
+
+        int rx0 = x0, ry0 = y0, rx1 = x1, ry1 = y1;
+        if(target.missedAll){
+            rx0 = 0;
+            ry0 = 0;
+            rx1 = getWidth();
+            ry1 = getHeight();
+        }else if(target.missedX1 > target.missedX0 && target.missedY1 > target.missedY0){
+            rx0 = Math.min(rx0, target.missedX0);
+            ry0 = Math.min(ry0, target.missedY0);
+            rx1 = Math.max(rx1, target.missedX1);
+            ry1 = Math.max(ry1, target.missedY1);
+        }
+        boolean full = rx0 == 0 && ry0 == 0 && rx1 == getWidth() && ry1 == getHeight();
+        int cx0 = rx0, cy0 = ry0, cx1 = rx1, cy1 = ry1;
+
         inContext(() -> {
-            if(renderColorBuf != 0){
-                glDeleteRenderbuffers(renderColorBuf);
-                renderColorBuf = 0;
+
+            boolean timed = timingListener != null;
+            boolean queried = timed && beginTimerQueries();
+
+            // Don't overwrite the texture until the application context is done sampling it
+            if(target.readFence != 0){
+                glWaitSync(target.readFence, 0, GL_TIMEOUT_IGNORED);
+                glDeleteSync(target.readFence);
+                target.readFence = 0;
             }
 
-            if(renderFBO != 0){
-                glDeleteFramebuffers(renderFBO);
-                renderFBO = 0;
+            glBindFramebuffer(GL_FRAMEBUFFER, renderFBO);
+            if(full){
+                glClear(GL_COLOR_BUFFER_BIT);
+            }else{
+                clearRegion(cx0, cy0, cx1, cy1);
+            }
+
+            long startNanos = timed ? System.nanoTime() : 0L;
+            if(queried){
+                glBeginQuery(GL_TIME_ELAPSED, drawQueries[queryHead]);
+            }
+            ui.render();
+            if(queried){
+                glEndQuery(GL_TIME_ELAPSED);
+            }
+            long drawnNanos = timed ? System.nanoTime() : 0L;
+
+            if(queried){
+                glBeginQuery(GL_TIME_ELAPSED, blitQueries[queryHead]);
+            }
+            blit(target, cx0, cy0, cx1, cy1);
+            if(queried){
+                glEndQuery(GL_TIME_ELAPSED);
+                queryHead = (queryHead + 1) % TIMER_QUERY_FRAMES;
+            }
+            if(timed){
+                timingListener.cpuTimes(drawnNanos - startNanos, System.nanoTime() - drawnNanos);
+            }
+
+            if(target.writeFence != 0){
+                glDeleteSync(target.writeFence);
+            }
+            target.writeFence = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+            // Make the fence visible to the application context
+            glFlush();
+        });
+
+        target.clearMissed();
+        for(SampleTarget other : ring){
+            if(other != target){
+                other.addMissed(cx0, cy0, cx1, cy1);
+            }
+        }
+
+        previous = latest;
+        latest = index;
+        renderedSinceAcquire = true;
+    }
+
+    protected void clearRegion(int x0, int y0, int x1, int y1){
+        // Skia tracks the scissor state, so restore it afterwards
+        boolean scissorWasEnabled = glIsEnabled(GL_SCISSOR_TEST);
+        glGetIntegerv(GL_SCISSOR_BOX, savedScissorBox);
+
+        glEnable(GL_SCISSOR_TEST);
+        glScissor(x0, y0, x1 - x0, y1 - y0);
+        glClear(GL_COLOR_BUFFER_BIT);
+
+        glScissor(savedScissorBox[0], savedScissorBox[1], savedScissorBox[2], savedScissorBox[3]);
+        if(!scissorWasEnabled){
+            glDisable(GL_SCISSOR_TEST);
+        }
+    }
+
+    protected boolean renderBufferFits(){
+        if(renderColorBuf == 0){
+            return false;
+        }
+
+        // Reuse the buffer if the surface fits and doesn't waste more than half of it
+        int neededWidth = roundUp(getWidth());
+        int neededHeight = roundUp(getHeight());
+        return neededWidth <= renderBufWidth
+                && neededHeight <= renderBufHeight
+                && 2L * neededWidth * neededHeight > (long) renderBufWidth * renderBufHeight;
+    }
+
+    protected static int roundUp(int pixels){
+        int g = RENDER_BUFFER_GRANULARITY;
+        return Math.max(g, (pixels + g - 1) / g * g);
+    }
+
+    protected SampleTarget acquireSampleTarget(int width, int height){
+        for(int i = samplePool.size() - 1; i >= 0; --i){
+            SampleTarget target = samplePool.get(i);
+            if(target.width == width && target.height == height){
+                samplePool.remove(i);
+                target.missedAll = true;
+                return target;
             }
+        }
+
+        SampleTarget target = new SampleTarget(width, height);
+
+        // Create sample buffer target
+        target.tex = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D, target.tex);
+        glTexImage2D(GL_TEXTURE_2D, 0, GL_SRGB_ALPHA, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, 0);
+        /*
+         * The initial setting of GL_TEXTURE_MIN_FILTER is
+         * GL_NEAREST_MIPMAP_LINEAR, for which SPORT would require mipmaps.
+         */
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
+        glBindTexture(GL_TEXTURE_2D, 0);
+
+        target.fbo = glGenFramebuffers();
+        glBindFramebuffer(GL_FRAMEBUFFER, target.fbo);
+        glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, target.tex, 0);
+
+        verifyFBO("OSR sample buffer");
+
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+
+        return target;
+    }
 
-            if(sampleTex != 0){
-                glDeleteTextures(sampleTex);
-                sampleTex = 0;
+    protected void releaseSampleTargets(){
+        // Keep one ring's worth of idle targets for reuse
+        for(SampleTarget target : ring){
+            samplePool.add(target);
+            if(samplePool.size() > bufferCount){
+                deleteSampleTarget(samplePool.remove(0));
             }
+        }
+
+        ring = new SampleTarget[0];
+    }
+
+    protected void deleteSampleTarget(SampleTarget target){
+        if(target.tex != 0){
+            glDeleteTextures(target.tex);
+            target.tex = 0;
+        }
+
+        if(target.fbo != 0){
+            glDeleteFramebuffers(target.fbo);
+            target.fbo = 0;
+        }
 
-            if(sampleFBO != 0){
-                glDeleteFramebuffers(sampleFBO);
-                sampleFBO = 0;
+        if(target.writeFence != 0){
+            glDeleteSync(target.writeFence);
+            target.writeFence = 0;
+        }
+
+        if(target.readFence != 0){
+            glDeleteSync(target.readFence);
+            target.readFence = 0;
+        }
+    }
+
+    protected void cleanRenderBuffer(){
+        if(renderColorBuf != 0){
+            glDeleteRenderbuffers(renderColorBuf);
+            renderColorBuf = 0;
+        }
+
+        if(renderFBO != 0){
+            glDeleteFramebuffers(renderFBO);
+            renderFBO = 0;
+        }
+
+        renderBufWidth = 0;
+        renderBufHeight = 0;
+    }
+
+    protected void cleanRenderSurface(){
+        inContext(() -> {
+            cleanRenderBuffer();
+
+            releaseSampleTargets();
+            for(SampleTarget target : samplePool){
+                deleteSampleTarget(target);
             }
+            samplePool.clear();
         });
 
     }
 
+    protected void blit(SampleTarget target, int x0, int y0, int x1, int y1){
+        glBindFramebuffer(GL_READ_FRAMEBUFFER, renderFBO);
+        glBindFramebuffer(GL_DRAW_FRAMEBUFFER, target.fbo);
+        glBlitFramebuffer(
+                x0, y0, x1, y1,
+                x0, y0, x1, y1,
+                GL_COLOR_BUFFER_BIT,
+                GL_LINEAR);
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+    }
+
     protected void verifyFBO(String bufferName){
         int status = glCheckFramebufferStatus(GL_FRAMEBUFFER);
         if(status != GL_FRAMEBUFFER_COMPLETE){
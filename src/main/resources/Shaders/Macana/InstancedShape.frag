@@ -0,0 +1,17 @@
+/*
+ * fragment shader for instanced collision shapes: a uniform base color lit by
+ * a single distant light plus ambient
+ */
+#version 330 core
+
+in vec3 worldNormal;
+
+uniform vec3 baseColor;
+uniform vec3 lightDirection; // in world coordinates, toward the scene
+
+out vec4 fragColor;
+
+void main() {
+    float diffuse = max(dot(normalize(worldNormal), -lightDirection), 0.0);
+    fragColor = vec4(baseColor * (0.3 + 0.7 * diffuse), 1.0);
+}
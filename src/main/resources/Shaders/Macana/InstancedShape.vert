@@ -0,0 +1,24 @@
+/*
+ * vertex shader for instanced collision shapes: each instance supplies a
+ * world location and a rotation quaternion
+ */
+#version 330 core
+
+layout(location = 0) in vec3 vertexPosition; // in shape coordinates
+layout(location = 1) in vec3 vertexNormal;   // in shape coordinates
+layout(location = 2) in vec3 instanceLocation; // in world coordinates
+layout(location = 3) in vec4 instanceRotation; // quaternion (x, y, z, w)
+
+uniform mat4 worldToClip;
+
+out vec3 worldNormal;
+
+vec3 rotate(vec4 q, vec3 v) {
+    return v + 2.0 * cross(q.xyz, cross(q.xyz, v) + q.w * v);
+}
+
+void main() {
+    vec3 worldPosition = instanceLocation + rotate(instanceRotation, vertexPosition);
+    worldNormal = rotate(instanceRotation, vertexNormal);
+    gl_Position = worldToClip * vec4(worldPosition, 1.0);
+}